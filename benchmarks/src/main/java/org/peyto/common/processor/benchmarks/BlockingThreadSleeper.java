@@ -0,0 +1,24 @@
+package org.peyto.common.processor.benchmarks;
+
+import org.peyto.common.processor.core.ThreadSleeper;
+
+/**
+ * Sleeper, which ignores the timeouts, so the scheduler daemon sleeps until it's pinged
+ */
+class BlockingThreadSleeper implements ThreadSleeper {
+
+    @Override
+    public synchronized void doNotify() {
+        notify();
+    }
+
+    @Override
+    public synchronized void doWait() throws InterruptedException {
+        wait();
+    }
+
+    @Override
+    public synchronized void doWaitWithTimeout(long sleepMillis) throws InterruptedException {
+        wait();
+    }
+}
@@ -0,0 +1,45 @@
+package org.peyto.common.processor.benchmarks;
+
+import org.peyto.common.processor.ProcessorThread;
+
+/**
+ * Processor thread without a processor, registered in the scheduler to count the wakeups it receives
+ */
+class CountingProcessorThread implements ProcessorThread {
+
+    private final long id;
+
+    volatile long wakeups;
+
+    CountingProcessorThread(long id) {
+        this.id = id;
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void run() {
+    }
+
+    @Override
+    public void onInput(int number, Object input) {
+    }
+
+    @Override
+    public void wakeProcessor() {
+        // single waker (the scheduler daemon or the benchmark thread), so plain increment is enough
+        wakeups++;
+    }
+
+    @Override
+    public long getCustomId() {
+        return id;
+    }
+
+    @Override
+    public Object getProcessorState(Object... request) {
+        return null;
+    }
+}
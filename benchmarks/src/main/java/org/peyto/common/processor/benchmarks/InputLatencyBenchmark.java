@@ -0,0 +1,134 @@
+package org.peyto.common.processor.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.peyto.common.processor.IdleStrategy;
+import org.peyto.common.processor.Processor;
+import org.peyto.common.processor.ProcessorContext;
+import org.peyto.common.processor.ProcessorProviderBinder;
+import org.peyto.common.processor.ProcessorResult;
+import org.peyto.common.processor.ProcessorThread;
+import org.peyto.common.processor.ProcessorThreadFactory;
+import org.peyto.common.processor.Receiver;
+import org.peyto.common.processor.core.DefaultProcessorTimeProvider;
+import org.peyto.common.processor.core.DefaultThreadSleeper;
+import org.peyto.common.processor.core.PooledProcessorThreadFactory;
+import org.peyto.common.processor.core.ProcessorThreadFactoryImpl;
+import org.peyto.common.processor.core.StallWatchdog;
+import org.peyto.common.processor.core.schedule.DefaultProcessorScheduler;
+import org.peyto.common.processor.core.trace.CycleTracer;
+import org.peyto.common.processor.metrics.ProcessorMetricsRegistry;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round trip from onInput() to the processor cycle, which has received the input: the benchmark thread offers
+ * the input and spins until the processor acknowledges it. Each operation is exactly one processor cycle, so
+ * with -prof gc the gc.alloc.rate.norm is the allocation of the framework per cycle (the input is preallocated).
+ * idle is ignored by the pooled processors, they always give the carrier back
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class InputLatencyBenchmark {
+
+    private static final Object INPUT = new Object();
+
+    @Param({"dedicated", "pooled"})
+    String mode;
+
+    @Param({"blocking", "busy-spin"})
+    String idle;
+
+    private PooledProcessorThreadFactory pooledFactory;
+    private ProcessorThread processorThread;
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    private long sent;
+    volatile long processed;
+    volatile boolean stopping;
+    // the input is never acknowledged after the failure, so the benchmark fails instead of spinning forever
+    volatile Exception failure;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        DefaultProcessorTimeProvider timeProvider = new DefaultProcessorTimeProvider();
+        DefaultProcessorScheduler scheduler = new DefaultProcessorScheduler(timeProvider, new DefaultThreadSleeper(), false, 50, 0);
+        // disabled, only the framework itself is measured
+        StallWatchdog stallWatchdog = new StallWatchdog(0, 1000, Collections.emptyList());
+        CycleTracer cycleTracer = new CycleTracer(0, 1024, "", 1000);
+        ProcessorThreadFactory factory;
+        if ("pooled".equals(mode)) {
+            pooledFactory = new PooledProcessorThreadFactory(scheduler, timeProvider, 1, 64, false,
+                    ProcessorMetricsRegistry.NOOP, stallWatchdog, cycleTracer);
+            factory = pooledFactory;
+        } else {
+            factory = new ProcessorThreadFactoryImpl(scheduler, timeProvider, false, ProcessorMetricsRegistry.NOOP, stallWatchdog, cycleTracer);
+        }
+        IdleStrategy idleStrategy = "busy-spin".equals(idle) ? IdleStrategy.busySpin() : IdleStrategy.blocking();
+        processorThread = factory.createProcessorThread(
+                (InputLatencyBenchmark benchmark, ProcessorProviderBinder binder) ->
+                        new AckProcessor(binder.registerInput(0), benchmark),
+                1L, this, threadId -> finished.countDown(), Long.MAX_VALUE, idleStrategy);
+        processorThread.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        stopping = true;
+        processorThread.wakeProcessor();
+        finished.await(10, TimeUnit.SECONDS);
+        if (pooledFactory != null) {
+            pooledFactory.destroy();
+        }
+    }
+
+    @Benchmark
+    public long inputToCycle() {
+        long target = ++sent;
+        processorThread.onInput(0, INPUT);
+        while (processed < target) {
+            // spin, the wait is a part of the measured latency
+            if (failure != null) {
+                throw new IllegalStateException("Processor has failed", failure);
+            }
+        }
+        return target;
+    }
+
+    private static class AckProcessor implements Processor {
+
+        private final Receiver<Object> input;
+        private final InputLatencyBenchmark benchmark;
+
+        AckProcessor(Receiver<Object> input, InputLatencyBenchmark benchmark) {
+            this.input = input;
+            this.benchmark = benchmark;
+        }
+
+        @Override
+        public ProcessorResult process(ProcessorContext context) {
+            if (benchmark.stopping) {
+                return ProcessorResult.END;
+            }
+            long received = 0;
+            while (input.receive() != null) {
+                received++;
+            }
+            if (received > 0) {
+                // written by the processor only
+                benchmark.processed += received;
+            }
+            return ProcessorResult.IDLE;
+        }
+
+        @Override
+        public void handleProcessorException(Exception e) {
+            benchmark.failure = e;
+        }
+    }
+}
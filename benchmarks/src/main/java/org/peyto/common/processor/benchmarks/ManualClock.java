@@ -0,0 +1,16 @@
+package org.peyto.common.processor.benchmarks;
+
+import org.peyto.common.processor.ProcessorTimeProvider;
+
+/**
+ * Clock moved by the benchmark, so the scheduler daemon never fires the timers, which the benchmark fires itself
+ */
+class ManualClock implements ProcessorTimeProvider {
+
+    volatile long millis;
+
+    @Override
+    public long getMillis() {
+        return millis;
+    }
+}
@@ -0,0 +1,147 @@
+package org.peyto.common.processor.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Control;
+import org.peyto.common.processor.BackpressurePolicy;
+import org.peyto.common.processor.core.BoundedQueueReceiver;
+import org.peyto.common.processor.core.InputReceiver;
+import org.peyto.common.processor.core.MpscQueueReceiver;
+import org.peyto.common.processor.core.QueueReceiver;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Input queue under 1, 2, 4 and 8 producers and a single consumer (the processor). Throughput of the group is
+ * the sum of offers and receives, the consumer counters show how many receives have found the queue empty.
+ * Producers back off, when the consumer is behind by more than MAX_BACKLOG, so unbounded queues don't grow the heap
+ */
+@State(Scope.Group)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReceiverBenchmark {
+
+    private static final int MAX_BACKLOG = 64 * 1024;
+    private static final int BACKLOG_CHECK_MASK = 255;
+    private static final Object INPUT = new Object();
+
+    @Param({"mpsc", "queue", "bounded"})
+    String receiver;
+
+    private InputReceiver<Object> input;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        switch (receiver) {
+            case "mpsc":
+                input = new MpscQueueReceiver<>();
+                break;
+            case "queue":
+                input = new QueueReceiver<>();
+                break;
+            case "bounded":
+                // doesn't block the producers, so they finish the iteration with the stopped consumer
+                input = new BoundedQueueReceiver<>(MAX_BACKLOG, BackpressurePolicy.DROP_NEWEST);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown receiver " + receiver);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Producer {
+        long offers;
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Consumer {
+        public long received;
+        public long empty;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            received = 0;
+            empty = 0;
+        }
+    }
+
+    @Benchmark
+    @Group("p1")
+    @GroupThreads(1)
+    public void offer1(Producer producer, Control control) {
+        offer(producer, control);
+    }
+
+    @Benchmark
+    @Group("p1")
+    @GroupThreads(1)
+    public Object receive1(Consumer consumer) {
+        return receive(consumer);
+    }
+
+    @Benchmark
+    @Group("p2")
+    @GroupThreads(2)
+    public void offer2(Producer producer, Control control) {
+        offer(producer, control);
+    }
+
+    @Benchmark
+    @Group("p2")
+    @GroupThreads(1)
+    public Object receive2(Consumer consumer) {
+        return receive(consumer);
+    }
+
+    @Benchmark
+    @Group("p4")
+    @GroupThreads(4)
+    public void offer4(Producer producer, Control control) {
+        offer(producer, control);
+    }
+
+    @Benchmark
+    @Group("p4")
+    @GroupThreads(1)
+    public Object receive4(Consumer consumer) {
+        return receive(consumer);
+    }
+
+    @Benchmark
+    @Group("p8")
+    @GroupThreads(8)
+    public void offer8(Producer producer, Control control) {
+        offer(producer, control);
+    }
+
+    @Benchmark
+    @Group("p8")
+    @GroupThreads(1)
+    public Object receive8(Consumer consumer) {
+        return receive(consumer);
+    }
+
+    private void offer(Producer producer, Control control) {
+        // size() of the synchronized queues takes the lock, so the backlog is checked once per batch
+        if ((producer.offers++ & BACKLOG_CHECK_MASK) == 0) {
+            // the consumer may have finished the iteration already
+            while (input.size() > MAX_BACKLOG && !control.stopMeasurement) {
+                Thread.yield();
+            }
+        }
+        input.offer(INPUT);
+    }
+
+    private Object receive(Consumer consumer) {
+        Object obj = input.receive();
+        if (obj == null) {
+            consumer.empty++;
+        } else {
+            consumer.received++;
+        }
+        return obj;
+    }
+}
@@ -0,0 +1,99 @@
+package org.peyto.common.processor.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.peyto.common.processor.core.schedule.DefaultProcessorScheduler;
+import org.peyto.common.processor.core.schedule.ProcessorScheduler;
+import org.peyto.common.processor.core.schedule.SchedulerTimeline;
+import org.peyto.common.processor.core.schedule.TimingWheelProcessorScheduler;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheduler with the timeline of 1k-100k pending timers, spread over a second of deadlines across 64 processors.
+ * schedule: cost of schedule + cancel of one timer at the given depth of the timeline.
+ * fire: schedule all the timers and expire them in one notifyThreads(), per batch.
+ * The clock is manual, the benchmark thread expires the timers itself, so the daemon thread only sleeps.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SchedulerBenchmark {
+
+    private static final int THREADS = 64;
+    private static final int SPREAD_MILLIS = 1_000;
+
+    @Param({"1000", "10000", "100000"})
+    int timers;
+
+    @Param({"default", "timing-wheel"})
+    String scheduler;
+
+    private ManualClock clock;
+    private ProcessorScheduler processorScheduler;
+    private SchedulerTimeline timeline;
+    private long next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        clock = new ManualClock();
+        clock.millis = System.currentTimeMillis();
+        if ("timing-wheel".equals(scheduler)) {
+            TimingWheelProcessorScheduler wheel = new TimingWheelProcessorScheduler(clock, new BlockingThreadSleeper(), false, 16, 50, 0);
+            processorScheduler = wheel;
+            timeline = wheel;
+        } else {
+            DefaultProcessorScheduler sorted = new DefaultProcessorScheduler(clock, new BlockingThreadSleeper(), false, 50, 0);
+            processorScheduler = sorted;
+            timeline = sorted;
+        }
+        for (int i = 0; i < THREADS; i++) {
+            processorScheduler.registerThread(i, new CountingProcessorThread(i));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Prefilled {
+
+        @Setup(Level.Iteration)
+        public void fill(SchedulerBenchmark benchmark) {
+            benchmark.expireAll();
+            benchmark.scheduleAll();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public boolean schedule(Prefilled timeline) {
+        long i = next++;
+        long threadId = i % THREADS;
+        long timerId = processorScheduler.schedule(threadId, deadline(i));
+        return processorScheduler.cancel(threadId, timerId);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void fire() {
+        scheduleAll();
+        expireAll();
+    }
+
+    private void scheduleAll() {
+        for (int i = 0; i < timers; i++) {
+            processorScheduler.schedule(i % THREADS, deadline(i));
+        }
+    }
+
+    private void expireAll() {
+        long expiry = clock.millis + SPREAD_MILLIS;
+        timeline.notifyThreads(expiry);
+        // timers are scheduled after the expired ones, the daemon never sees a deadline in the past
+        clock.millis = expiry;
+    }
+
+    private long deadline(long i) {
+        return clock.millis + 1 + i % SPREAD_MILLIS;
+    }
+}
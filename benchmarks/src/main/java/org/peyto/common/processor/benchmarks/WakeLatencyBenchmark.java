@@ -0,0 +1,50 @@
+package org.peyto.common.processor.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.peyto.common.processor.core.DefaultProcessorTimeProvider;
+import org.peyto.common.processor.core.DefaultThreadSleeper;
+import org.peyto.common.processor.core.schedule.DefaultProcessorScheduler;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheduled wakeup through the scheduler daemon thread: the benchmark thread schedules the wakeup delay millis
+ * ahead and spins until the processor thread is woken. delay=0 is the ping + notify path of the daemon, delay=1
+ * adds the timed wait, so the result minus the delay is the lateness of the daemon (see also the wakeupLagMillis
+ * of the scheduler metrics)
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WakeLatencyBenchmark {
+
+    private static final long THREAD_ID = 1;
+
+    @Param({"0", "1"})
+    long delay;
+
+    private DefaultProcessorTimeProvider timeProvider;
+    private DefaultProcessorScheduler scheduler;
+    private CountingProcessorThread processorThread;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        timeProvider = new DefaultProcessorTimeProvider();
+        scheduler = new DefaultProcessorScheduler(timeProvider, new DefaultThreadSleeper(), false, 50, 0);
+        processorThread = new CountingProcessorThread(THREAD_ID);
+        scheduler.registerThread(THREAD_ID, processorThread);
+    }
+
+    @Benchmark
+    public long scheduledWakeup() {
+        long wakeups = processorThread.wakeups;
+        scheduler.schedule(THREAD_ID, timeProvider.getMillis() + delay);
+        while (processorThread.wakeups == wakeups) {
+            // spin, the wait is a part of the measured latency
+        }
+        return wakeups;
+    }
+}
@@ -0,0 +1,310 @@
+package org.peyto.common.processor.benchmarks.load;
+
+import org.peyto.common.processor.EnableSpringProcessorFramework;
+import org.peyto.common.processor.ProcessorProviderBinder;
+import org.peyto.common.processor.ProcessorThread;
+import org.peyto.common.processor.ProcessorThreadFactory;
+import org.peyto.common.processor.benchmarks.load.SyntheticProcessor.Input;
+import org.peyto.common.processor.core.schedule.ProcessorScheduler;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Synthetic macro load: starts N processors through the framework, offers them inputs at a rate, which grows with
+ * each step, and prints the capacity report per step. The framework is configured by the usual processor.* system
+ * properties (thread mode, scheduler, time provider), the load by load.* properties, see {@link LoadProfile}.
+ * The last step, which holds the latency target and the offered rate, is the capacity of the box for this profile.
+ */
+public class LoadGenerator {
+
+    private static final long PRODUCER_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    // the step keeps up, if processed at least this share of the offered inputs
+    private static final double KEEP_UP_RATIO = 0.95;
+
+    private final LoadProfile profile;
+    private final ProcessorThreadFactory factory;
+    private final ProcessorScheduler scheduler;
+
+    private final AtomicBoolean stopping = new AtomicBoolean(false);
+    // step, which the processors record the input latency for, 0 - warmup
+    private final AtomicInteger currentStep = new AtomicInteger();
+    private final List<SyntheticProcessor> processors = new ArrayList<>();
+    private final List<ProcessorThread> threads = new ArrayList<>();
+    private final Producer[] producers;
+    private CountDownLatch finished;
+
+    // offered inputs per second of all the producers
+    private volatile double offeredRate;
+
+    LoadGenerator(LoadProfile profile, ProcessorThreadFactory factory, ProcessorScheduler scheduler) {
+        this.profile = profile;
+        this.factory = factory;
+        this.scheduler = scheduler;
+        this.producers = new Producer[profile.producers];
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        LoadProfile profile = LoadProfile.fromSystemProperties();
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(LoadGenerator.Config.class)) {
+            new LoadGenerator(profile, context.getBean(ProcessorThreadFactory.class), context.getBean(ProcessorScheduler.class)).run();
+        }
+    }
+
+    @Configuration
+    @EnableSpringProcessorFramework
+    static class Config {
+    }
+
+    void run() throws InterruptedException {
+        System.out.println("Load profile: " + profile);
+        System.out.println("Framework: " + System.getProperties().stringPropertyNames().stream()
+                .filter(name -> name.startsWith("processor.")).map(name -> name + "=" + System.getProperty(name)).sorted()
+                .reduce((a, b) -> a + ", " + b).orElse("defaults"));
+        startProcessors();
+        startProducers();
+
+        offeredRate = profile.totalInputRate(0);
+        Thread.sleep(profile.warmupMillis);
+        // the first step records into the buffer, which the warmup has not touched
+        currentStep.set(1);
+
+        List<StepResult> results = new ArrayList<>();
+        System.out.println(StepResult.HEADER);
+        for (int step = 1; step <= profile.steps; step++) {
+            offeredRate = profile.totalInputRate(step);
+            StepResult result = measureStep(step);
+            results.add(result);
+            System.out.println(result);
+        }
+        stop();
+        printCapacity(results);
+    }
+
+    private void startProcessors() {
+        finished = new CountDownLatch(profile.processors);
+        for (long id = 1; id <= profile.processors; id++) {
+            ProcessorThread thread = factory.createProcessorThread((LoadProfile loadProfile, ProcessorProviderBinder binder) -> {
+                SyntheticProcessor processor = new SyntheticProcessor(binder.<Input>registerInput(SyntheticProcessor.INPUT), loadProfile,
+                        stopping, currentStep);
+                synchronized (processors) {
+                    processors.add(processor);
+                }
+                return processor;
+            }, id, profile, threadId -> finished.countDown(), Long.MAX_VALUE);
+            threads.add(thread);
+        }
+        threads.forEach(ProcessorThread::start);
+    }
+
+    private void startProducers() {
+        for (int p = 0; p < producers.length; p++) {
+            List<ProcessorThread> targets = new ArrayList<>();
+            for (int i = p; i < threads.size(); i += producers.length) {
+                targets.add(threads.get(i));
+            }
+            producers[p] = new Producer(p, targets);
+            producers[p].start();
+        }
+    }
+
+    private StepResult measureStep(int step) throws InterruptedException {
+        List<SyntheticProcessor> snapshot = processors();
+        long offeredBefore = offered();
+        long processedBefore = processed(snapshot);
+        long timersBefore = timersFired(snapshot);
+        long failuresBefore = failures(snapshot);
+        long gcCountBefore = gcCount();
+        long gcTimeBefore = gcTimeMillis();
+        long startNanos = System.nanoTime();
+
+        Thread.sleep(profile.stepMillis);
+
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        // the inputs received from now on belong to the next step. Its buffer was last written two steps ago,
+        // so it is reset before the switch, and nothing records into the buffer of this step while it is read
+        snapshot.forEach(processor -> processor.inputLatencyNanos(step + 1).reset());
+        currentStep.set(step + 1);
+        FineLatencyHistogram latency = new FineLatencyHistogram();
+        snapshot.forEach(processor -> latency.add(processor.inputLatencyNanos(step)));
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        return new StepResult(step, offeredRate,
+                (offered() - offeredBefore) / seconds,
+                (processed(snapshot) - processedBefore) / seconds,
+                (timersFired(snapshot) - timersBefore) / seconds,
+                latency, failures(snapshot) - failuresBefore,
+                ManagementFactory.getThreadMXBean().getThreadCount(),
+                heap.getUsed(), heap.getCommitted(),
+                gcCount() - gcCountBefore, gcTimeMillis() - gcTimeBefore);
+    }
+
+    private void stop() throws InterruptedException {
+        stopping.set(true);
+        for (Producer producer : producers) {
+            producer.join();
+        }
+        threads.forEach(ProcessorThread::wakeProcessor);
+        if (!finished.await(30, TimeUnit.SECONDS)) {
+            System.out.println("Not all the processors have finished: " + finished.getCount() + " are still running");
+        }
+    }
+
+    private void printCapacity(List<StepResult> results) {
+        StepResult capacity = null;
+        for (StepResult result : results) {
+            if (!result.holds(profile.latencyTargetMicros)) {
+                break;
+            }
+            capacity = result;
+        }
+        System.out.println();
+        // scheduler lags are cumulative since the start, shards don't share the histograms to reset per step
+        System.out.println("Scheduler (whole run): " + scheduler.getMetrics());
+        processors().stream().map(processor -> processor.lastFailure).filter(failure -> failure != null).findFirst()
+                .ifPresent(failure -> System.out.println("Processors have failed, e.g. with " + failure));
+        if (capacity == null) {
+            System.out.printf("Capacity: below the first step, p99 over %d us, processed below %.0f%% of offered or failures%n",
+                    profile.latencyTargetMicros, KEEP_UP_RATIO * 100);
+        } else {
+            System.out.printf("Capacity: step %d, %.0f inputs/s over %d processors (%.1f/s each) with p99 input latency %d us%n",
+                    capacity.step, capacity.processedRate, profile.processors, capacity.processedRate / profile.processors,
+                    capacity.inputLatencyNanos.getValueAtPercentile(99) / 1000);
+        }
+    }
+
+    private List<SyntheticProcessor> processors() {
+        synchronized (processors) {
+            return new ArrayList<>(processors);
+        }
+    }
+
+    private long offered() {
+        long offered = 0;
+        for (Producer producer : producers) {
+            offered += producer.offered;
+        }
+        return offered;
+    }
+
+    private static long processed(List<SyntheticProcessor> processors) {
+        return processors.stream().mapToLong(processor -> processor.processed.get()).sum();
+    }
+
+    private static long timersFired(List<SyntheticProcessor> processors) {
+        return processors.stream().mapToLong(processor -> processor.timersFired.get()).sum();
+    }
+
+    private static long failures(List<SyntheticProcessor> processors) {
+        return processors.stream().mapToLong(processor -> processor.failures.get()).sum();
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+    }
+
+    private static long gcTimeMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+
+    /**
+     * Offers the inputs round-robin to its share of the processors, paced by the current offered rate.
+     * Falling behind is not hidden: offered rate of the step is what was actually sent
+     */
+    private class Producer extends Thread {
+
+        private final List<ProcessorThread> targets;
+        // written by the producer only
+        volatile long offered;
+
+        Producer(int index, List<ProcessorThread> targets) {
+            super("load-producer-" + index);
+            setDaemon(true);
+            this.targets = targets;
+        }
+
+        @Override
+        public void run() {
+            if (targets.isEmpty()) {
+                return;
+            }
+            int next = 0;
+            double credit = 0;
+            long lastNanos = System.nanoTime();
+            while (!stopping.get()) {
+                long nowNanos = System.nanoTime();
+                credit += offeredRate / producers.length * (nowNanos - lastNanos) / 1e9;
+                lastNanos = nowNanos;
+                for (; credit >= 1; credit--) {
+                    targets.get(next).onInput(SyntheticProcessor.INPUT, new Input(System.nanoTime()));
+                    next = next + 1 == targets.size() ? 0 : next + 1;
+                    offered++;
+                }
+                LockSupport.parkNanos(PRODUCER_PARK_NANOS);
+            }
+        }
+    }
+
+    private static class StepResult {
+
+        static final String HEADER = String.format("%4s %12s %12s %12s %10s %9s %9s %9s %9s %8s %8s %10s %10s %6s %8s",
+                "step", "target/s", "offered/s", "processed/s", "timers/s", "p50 us", "p99 us", "p999 us", "max us",
+                "failed", "threads", "heap MB", "commit MB", "gc", "gc ms");
+
+        final int step;
+        final double targetRate;
+        final double offeredRate;
+        final double processedRate;
+        final double timersRate;
+        final FineLatencyHistogram inputLatencyNanos;
+        final long failures;
+        final int threads;
+        final long heapUsed;
+        final long heapCommitted;
+        final long gcCount;
+        final long gcTimeMillis;
+
+        StepResult(int step, double targetRate, double offeredRate, double processedRate, double timersRate,
+                   FineLatencyHistogram inputLatencyNanos, long failures, int threads,
+                   long heapUsed, long heapCommitted, long gcCount, long gcTimeMillis) {
+            this.step = step;
+            this.targetRate = targetRate;
+            this.offeredRate = offeredRate;
+            this.processedRate = processedRate;
+            this.timersRate = timersRate;
+            this.inputLatencyNanos = inputLatencyNanos;
+            this.failures = failures;
+            this.threads = threads;
+            this.heapUsed = heapUsed;
+            this.heapCommitted = heapCommitted;
+            this.gcCount = gcCount;
+            this.gcTimeMillis = gcTimeMillis;
+        }
+
+        boolean holds(long latencyTargetMicros) {
+            return inputLatencyNanos.getValueAtPercentile(99) / 1000 <= latencyTargetMicros
+                    && processedRate >= offeredRate * KEEP_UP_RATIO
+                    && offeredRate >= targetRate * KEEP_UP_RATIO
+                    && failures == 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%4d %12.0f %12.0f %12.0f %10.0f %9d %9d %9d %9d %8d %8d %10d %10d %6d %8d",
+                    step, targetRate, offeredRate, processedRate, timersRate,
+                    inputLatencyNanos.getValueAtPercentile(50) / 1000, inputLatencyNanos.getValueAtPercentile(99) / 1000,
+                    inputLatencyNanos.getValueAtPercentile(99.9) / 1000, inputLatencyNanos.getMax() / 1000,
+                    failures, threads,
+                    heapUsed >> 20, heapCommitted >> 20, gcCount, gcTimeMillis);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.peyto.common.processor.benchmarks.load;
+
+import static org.peyto.common.processor.utils.CheckerUtils.checkArg;
+
+/**
+ * Settings of the synthetic load, read from the system properties (-Dload.processors=1000 etc.)
+ */
+class LoadProfile {
+
+    // number of synthetic processors
+    final int processors;
+    // inputs per second of each processor at the first step, the step k offers k times more
+    final double inputRate;
+    // CPU time, which the processor spins per input and per BUSY cycle
+    final long processCostNanos;
+    // scheduled wakeups per second of each processor, 0 - no timers
+    final double timersPerSecond;
+    // share of the cycles, which return BUSY regardless of the inputs, so the processor is run again without the signal
+    final double busyRatio;
+    final int producers;
+    final int steps;
+    final long stepMillis;
+    final long warmupMillis;
+    // the step holds, if p99 input latency is within the target, the processors keep up with the offered rate and
+    // don't fail. Percentiles are upper bounds of ~3% wide buckets, see FineLatencyHistogram
+    final long latencyTargetMicros;
+
+    private LoadProfile(int processors, double inputRate, long processCostMicros, double timersPerSecond, double busyRatio,
+                        int producers, int steps, long stepMillis, long warmupMillis, long latencyTargetMicros) {
+        checkArg(processors > 0, "load.processors should be positive, but was %d", processors);
+        checkArg(inputRate >= 0, "load.input-rate should not be negative, but was %s", inputRate);
+        checkArg(processCostMicros >= 0, "load.process-micros should not be negative, but was %d", processCostMicros);
+        checkArg(timersPerSecond >= 0 && timersPerSecond <= 1000, "load.timers-per-second should be in [0, 1000], but was %s", timersPerSecond);
+        checkArg(busyRatio >= 0 && busyRatio < 1, "load.busy-ratio should be in [0, 1), but was %s", busyRatio);
+        checkArg(producers > 0, "load.producers should be positive, but was %d", producers);
+        checkArg(steps > 0, "load.steps should be positive, but was %d", steps);
+        checkArg(stepMillis > 0, "load.step-seconds should be positive, but was %d", stepMillis / 1000);
+        this.processors = processors;
+        this.inputRate = inputRate;
+        this.processCostNanos = processCostMicros * 1000;
+        this.timersPerSecond = timersPerSecond;
+        this.busyRatio = busyRatio;
+        this.producers = producers;
+        this.steps = steps;
+        this.stepMillis = stepMillis;
+        this.warmupMillis = warmupMillis;
+        this.latencyTargetMicros = latencyTargetMicros;
+    }
+
+    static LoadProfile fromSystemProperties() {
+        return new LoadProfile(
+                Integer.getInteger("load.processors", 100),
+                Double.parseDouble(System.getProperty("load.input-rate", "100")),
+                Long.getLong("load.process-micros", 10),
+                Double.parseDouble(System.getProperty("load.timers-per-second", "10")),
+                Double.parseDouble(System.getProperty("load.busy-ratio", "0.1")),
+                Integer.getInteger("load.producers", 2),
+                Integer.getInteger("load.steps", 5),
+                Long.getLong("load.step-seconds", 10) * 1000,
+                Long.getLong("load.warmup-seconds", 5) * 1000,
+                Long.getLong("load.latency-target-micros", 1000));
+    }
+
+    /**
+     * @param step 0 for warmup, 1..steps
+     */
+    double totalInputRate(int step) {
+        return inputRate * processors * Math.max(step, 1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("processors=%d, input-rate=%.1f/s, process-micros=%d, timers-per-second=%.1f, busy-ratio=%.2f, "
+                        + "producers=%d, steps=%d x %ds, latency-target-micros=%d", processors, inputRate, processCostNanos / 1000,
+                timersPerSecond, busyRatio, producers, steps, stepMillis / 1000, latencyTargetMicros);
+    }
+}
@@ -0,0 +1,106 @@
+package org.peyto.common.processor.benchmarks.load;
+
+import org.peyto.common.processor.Processor;
+import org.peyto.common.processor.ProcessorContext;
+import org.peyto.common.processor.ProcessorResult;
+import org.peyto.common.processor.Receiver;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Processor with configurable cost: spins process cost per input, re-arms its timer at the timer density and returns
+ * BUSY on the busy ratio of the cycles, spinning the process cost on the BUSY re-run as well. Input latency is recorded
+ * into the histogram of the current step parity, so the report reads the finished step, while the next one is recorded
+ */
+class SyntheticProcessor implements Processor {
+
+    static final int INPUT = 0;
+
+    private final Receiver<Input> input;
+    private final LoadProfile profile;
+    private final AtomicBoolean stopping;
+    private final AtomicInteger step;
+    private final long timerPeriodMillis;
+
+    // written by the processor, read by the report
+    private final FineLatencyHistogram[] inputLatencyNanos = {new FineLatencyHistogram(), new FineLatencyHistogram()};
+    final AtomicLong processed = new AtomicLong();
+    final AtomicLong timersFired = new AtomicLong();
+    final AtomicLong failures = new AtomicLong();
+    volatile Exception lastFailure;
+
+    // 0 until the first cycle
+    private long nextTimerMillis;
+    private double busyCredit;
+
+    SyntheticProcessor(Receiver<Input> input, LoadProfile profile, AtomicBoolean stopping, AtomicInteger step) {
+        this.input = input;
+        this.profile = profile;
+        this.stopping = stopping;
+        this.step = step;
+        this.timerPeriodMillis = profile.timersPerSecond > 0 ? Math.max(1, Math.round(1000 / profile.timersPerSecond)) : 0;
+    }
+
+    @Override
+    public ProcessorResult process(ProcessorContext context) {
+        if (stopping.get()) {
+            return ProcessorResult.END;
+        }
+        // the timer is armed on the first cycle, the cycle time is not known in init()
+        if (timerPeriodMillis > 0 && context.getCycleTimeMillis() >= nextTimerMillis) {
+            if (nextTimerMillis > 0) {
+                timersFired.incrementAndGet();
+            }
+            nextTimerMillis = context.getCycleTimeMillis() + timerPeriodMillis;
+            context.scheduleWakeup(nextTimerMillis);
+        }
+        Input received = input.receive();
+        if (received != null) {
+            inputLatencyNanos(step.get()).record(System.nanoTime() - received.sentNanos);
+            spin(profile.processCostNanos);
+            processed.incrementAndGet();
+        }
+        busyCredit += profile.busyRatio;
+        if (busyCredit >= 1) {
+            busyCredit -= 1;
+            if (received == null) {
+                spin(profile.processCostNanos);
+            }
+            return ProcessorResult.BUSY;
+        }
+        // the rest of the queue is taken by the next cycles, so every input costs a cycle
+        return input.hasData() ? ProcessorResult.BUSY : ProcessorResult.IDLE;
+    }
+
+    @Override
+    public void handleProcessorException(Exception e) {
+        lastFailure = e;
+        failures.incrementAndGet();
+    }
+
+    /**
+     * @return histogram of the inputs received during the step, shared with the steps of the same parity
+     */
+    FineLatencyHistogram inputLatencyNanos(int step) {
+        return inputLatencyNanos[step & 1];
+    }
+
+    private static void spin(long nanos) {
+        if (nanos > 0) {
+            long deadline = System.nanoTime() + nanos;
+            while (System.nanoTime() < deadline) {
+                // burn the process cost
+            }
+        }
+    }
+
+    static final class Input {
+        final long sentNanos;
+
+        Input(long sentNanos) {
+            this.sentNanos = sentNanos;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package org.peyto.common.processor;
+
+/**
+ * What happens, when the producer offers an input to the full bounded input queue
+ */
+public enum BackpressurePolicy {
+    /**
+     * Producer waits until the processor consumes some inputs. Processor shouldn't send inputs to itself with this
+     * policy, and pooled processors shouldn't send to blocking inputs, because it blocks the carrier thread
+     */
+    BLOCK_PRODUCER,
+    /**
+     * Producer receives IllegalStateException from onInput
+     */
+    REJECT,
+    /**
+     * The oldest input in the queue is dropped to give place for the new one
+     */
+    DROP_OLDEST,
+    /**
+     * The new input is dropped
+     */
+    DROP_NEWEST;
+}
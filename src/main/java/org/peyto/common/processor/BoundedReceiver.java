@@ -0,0 +1,32 @@
+package org.peyto.common.processor;
+
+/**
+ * Receiver of the input with limited capacity, see {@link ProcessorProviderBinder#registerInput(int, int, BackpressurePolicy)}.
+ * Counters can be read from any thread
+ */
+public interface BoundedReceiver<T> extends Receiver<T> {
+
+    int capacity();
+
+    BackpressurePolicy policy();
+
+    /**
+     * @return number of inputs dropped by DROP_OLDEST/DROP_NEWEST policies
+     */
+    long getDroppedCount();
+
+    /**
+     * @return number of inputs rejected by REJECT policy
+     */
+    long getRejectedCount();
+
+    /**
+     * @return number of times producers were blocked by BLOCK_PRODUCER policy
+     */
+    long getBlockedCount();
+
+    /**
+     * @return total time producers spent blocked by BLOCK_PRODUCER policy
+     */
+    long getBlockedTimeNanos();
+}
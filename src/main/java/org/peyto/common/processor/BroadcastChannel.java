@@ -0,0 +1,40 @@
+package org.peyto.common.processor;
+
+import java.util.Collection;
+
+/**
+ * Sequenced buffer shared by many processors. Each processor attaches the channel as one of its inputs
+ * ({@link ProcessorProviderBinder#registerBroadcastInput}) and reads it with its own cursor, so publishing is a single
+ * write instead of one onInput per processor
+ */
+public interface BroadcastChannel<T> {
+
+    /**
+     * Publish the element to all the subscribers and wake them
+     */
+    void publish(T element);
+
+    /**
+     * Publish the elements, waking every subscriber once for the whole batch
+     */
+    void publishAll(Collection<? extends T> elements);
+
+    int getSubscribersCount();
+
+    /**
+     * @return number of published, but not yet received elements of the subscribed processor, or -1 if it's not
+     * subscribed
+     */
+    long getLag(long threadId);
+
+    /**
+     * @return lag of the slowest subscriber
+     */
+    long getMaxLag();
+
+    /**
+     * @return number of elements the processor has missed because of {@link SlowSubscriberPolicy#SKIP_OLDEST},
+     * or -1 if it's not subscribed
+     */
+    long getSkippedCount(long threadId);
+}
@@ -0,0 +1,14 @@
+package org.peyto.common.processor;
+
+/**
+ * Receiver of the input, which keeps only the latest pending input per key, see
+ * {@link ProcessorProviderBinder#registerConflatingInput(int, java.util.function.Function)}.
+ * Counters can be read from any thread
+ */
+public interface ConflatingReceiver<T> extends Receiver<T> {
+
+    /**
+     * @return number of inputs replaced by the newer ones before they were received
+     */
+    long getConflatedCount();
+}
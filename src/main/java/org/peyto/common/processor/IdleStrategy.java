@@ -0,0 +1,68 @@
+package org.peyto.common.processor;
+
+/**
+ * How the processor thread waits for the input or wakeup, after the cycle has returned IDLE.
+ * Spinning strategies give microsecond wake latency at the cost of a busy core, blocking one is cheap, but wake up
+ * is an OS reschedule. Used only by the processors with own thread, pooled processors always give the carrier back
+ */
+@FunctionalInterface
+public interface IdleStrategy {
+
+    /**
+     * Signal to park until the processor is woken up
+     */
+    long PARK_UNTIL_SIGNAL = -1;
+
+    /**
+     * Perform a single idle step. It's called in a loop, until the processor is signalled
+     *
+     * @param idleCount number of idle steps performed since the processor became idle, saturated at Integer.MAX_VALUE
+     * @return 0, if the step has been performed (e.g. spin or yield), nanos to park (waking on signal), or
+     * {@link #PARK_UNTIL_SIGNAL}
+     */
+    long idle(int idleCount);
+
+    /**
+     * Park until the signal, the default behaviour
+     */
+    static IdleStrategy blocking() {
+        return idleCount -> PARK_UNTIL_SIGNAL;
+    }
+
+    /**
+     * Never give the core back
+     */
+    static IdleStrategy busySpin() {
+        return idleCount -> 0;
+    }
+
+    /**
+     * Spin, then yield the core to other threads, but never park
+     */
+    static IdleStrategy spinThenYield(int spins) {
+        return idleCount -> {
+            if (idleCount >= spins) {
+                Thread.yield();
+            }
+            return 0;
+        };
+    }
+
+    /**
+     * Spin, then yield, then park for exponentially growing time from minParkNanos up to maxParkNanos
+     */
+    static IdleStrategy backoff(int spins, int yields, long minParkNanos, long maxParkNanos) {
+        return idleCount -> {
+            if (idleCount < spins) {
+                return 0;
+            }
+            if (idleCount < spins + yields) {
+                Thread.yield();
+                return 0;
+            }
+            int parks = idleCount - spins - yields;
+            long parkNanos = parks < Long.numberOfLeadingZeros(minParkNanos) - 1 ? minParkNanos << parks : maxParkNanos;
+            return Math.min(parkNanos, maxParkNanos);
+        };
+    }
+}
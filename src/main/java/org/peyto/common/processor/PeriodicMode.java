@@ -0,0 +1,16 @@
+package org.peyto.common.processor;
+
+/**
+ * Recurrence of the periodic wakeup, see {@link ProcessorContext#schedulePeriodic(long, PeriodicMode)}.
+ * In both modes missed periods are folded into one wakeup, when the scheduler falls behind
+ */
+public enum PeriodicMode {
+    /**
+     * Wakeups at first time + N * period, regardless of when the previous wakeup has happened
+     */
+    FIXED_RATE,
+    /**
+     * The next wakeup is scheduled period after the previous wakeup has actually happened
+     */
+    FIXED_DELAY;
+}
@@ -2,21 +2,67 @@ package org.peyto.common.processor;
 
 public interface ProcessorContext {
 
-    void scheduleWakeup(long timeMillis);
+    /**
+     * Schedule the wakeup of the Processor Thread.
+     * In earliest-wins mode (processor.scheduler.dedupe-wakeups=true) the wakeup later than the pending one is not
+     * scheduled, and the id of the pending wakeup is returned. The id is shared, so cancelWakeup of it cancels
+     * the pending (earlier) wakeup too.
+     *
+     * @return id of the scheduled wakeup, which can be used in {@link #cancelWakeup(long)}
+     */
+    long scheduleWakeup(long timeMillis);
 
     /**
-     * Cancel all awakenings of the Processor Thread, scheduled earlier.
+     * Schedule the wakeup, which may happen at any moment in [timeMillis, timeMillis + slackMillis], e.g. for
+     * housekeeping, heartbeats or stale data checks. Scheduler fires nearby wakeups together, so the tolerant timers
+     * cost fewer scheduler wakeups and context switches. In earliest-wins mode it's deduplicated with the pending
+     * wakeup by the latest moment it may fire, with the same shared id semantics as {@link #scheduleWakeup(long)}.
+     *
+     * @return id of the scheduled wakeup, which can be used in {@link #cancelWakeup(long)}
+     */
+    long scheduleWakeup(long timeMillis, long slackMillis);
+
+    /**
+     * Schedule the periodic wakeup, starting period after the current cycle time. The scheduler re-arms the timer
+     * itself, so the processor doesn't need to schedule the next tick on every cycle.
+     *
+     * @return id of the periodic wakeup, which stops it in {@link #cancelWakeup(long)}
+     */
+    long schedulePeriodic(long periodMillis, PeriodicMode mode);
+
+    /**
+     * Schedule the wakeup with sub-millisecond precision, e.g. for pacing. The scheduler spins before the deadline,
+     * so it costs some CPU of the scheduler thread, use {@link #scheduleWakeup(long)} for coarse timeouts.
      *
-     * @deprecated It's not recommended using this method, because additional scheduling shouldn't affect processor
-     * state, processor should be idempotent. But cancelling can be pretty costly operation, since it needs to iterate
-     * the whole timeline map of all processors. So, the method will be synchronized for some time, and it can affect
-     * performance of other processor threads.
+     * @param timeNanos deadline in {@link #currentTimeNanos()} clock
+     * @return id of the scheduled wakeup, which can be used in {@link #cancelWakeup(long)}
+     */
+    long scheduleWakeupNanos(long timeNanos);
+
+    /**
+     * Cancel the wakeup, scheduled earlier, e.g. when the timeout is not needed anymore.
+     * Cancellation doesn't iterate the timeline, so it's cheap, and it saves an empty processor cycle.
+     *
+     * @param wakeupId id, returned by {@link #scheduleWakeup(long)} or {@link #scheduleWakeupNanos(long)}
+     * @return true if the wakeup was cancelled, false if it has already happened or was cancelled earlier
+     */
+    boolean cancelWakeup(long wakeupId);
+
+    /**
+     * Cancel all awakenings of the Processor Thread, scheduled earlier.
+     * It's not necessary to cancel wakeups on processor finish, they are purged automatically.
+     * Additional wakeups shouldn't affect processor state anyway, processor should be idempotent.
      */
-    @Deprecated
     void cancelAllScheduledWakeups();
 
     long getCycleTimeMillis();
 
+    /**
+     * @return current monotonic time in nanos (not the cycle time, it's read on every call), see
+     * {@link ProcessorTimeProvider#getNanos()}
+     */
+    long currentTimeNanos();
+
     /**
      * @return unique cycle id (incrementing number), as we might have multiple processors executions for the same
      * millisecond, we need some id for deterministic replay
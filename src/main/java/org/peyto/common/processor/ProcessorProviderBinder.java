@@ -1,6 +1,40 @@
 package org.peyto.common.processor;
 
+import java.util.function.Function;
+import java.util.function.Supplier;
+
 public interface ProcessorProviderBinder {
 
+    /**
+     * Register unbounded input queue
+     */
     <T extends Object> Receiver<T> registerInput(int index);
+
+    /**
+     * Register input queue, which holds up to capacity inputs. When it's full, the offered input is handled
+     * according to the policy, so the lagging processor degrades predictably instead of growing the heap
+     */
+    <T extends Object> BoundedReceiver<T> registerInput(int index, int capacity, BackpressurePolicy policy);
+
+    /**
+     * Register input queue, which keeps only the latest pending input per key (e.g. the latest quote per instrument).
+     * Inputs are received in order of the first arrival of their keys
+     */
+    <T extends Object, K> ConflatingReceiver<T> registerConflatingInput(int index, Function<? super T, ? extends K> keyExtractor);
+
+    /**
+     * Register ring input of pre-allocated mutable slots. Producers fill the slots in place using
+     * {@link ProcessorThread#getRingPublisher(int)}, the processor reads them in place. The received slot is released
+     * on the next receive() or at the end of the cycle, so it shouldn't be kept by the processor.
+     * Ring input can't be fed by {@link ProcessorThread#onInput(int, Object)}, it throws IllegalArgumentException
+     *
+     * @param capacity number of slots, power of 2
+     */
+    <E extends Object> Receiver<E> registerRingInput(int index, int capacity, Supplier<? extends E> slotFactory);
+
+    /**
+     * Attach the shared broadcast channel as the input. The processor receives the elements published after
+     * registration, until it's finished
+     */
+    <T extends Object> Receiver<T> registerBroadcastInput(int index, BroadcastChannel<T> channel);
 }
@@ -8,6 +8,22 @@ public interface ProcessorThread extends Runnable {
 
     void wakeProcessor();
 
+    /**
+     * Called by the scheduler, when the wakeup scheduled at deadlineMillis has expired.
+     * Same as wakeProcessor, but the processor thread can trace the reason of the cycle
+     */
+    default void onScheduledWakeup(long deadlineMillis) {
+        wakeProcessor();
+    }
+
+    /**
+     * @return publisher of the input, registered with {@link ProcessorProviderBinder#registerRingInput}.
+     * The default is for the processor threads without ring inputs, so existing implementations keep compiling
+     */
+    default <E> RingPublisher<E> getRingPublisher(int index) {
+        throw new IllegalStateException("Input " + index + " is not a ring input");
+    }
+
     /**
      * The reason it's custom - because there is id in Thread
      * But we want to have specific id, so we can have more control over it
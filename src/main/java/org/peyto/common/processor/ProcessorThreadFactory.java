@@ -5,12 +5,27 @@ import org.peyto.common.processor.simulation.ReplayData;
 
 public interface ProcessorThreadFactory {
 
-    <T> ProcessorThread createProcessorThread(
+    default <T> ProcessorThread createProcessorThread(
             ProcessorProvider<T> processorProvider,
             Long threadId,
             T configurationObject,
             ProcessorThreadListener threadStatusChangeListener,
             long processorEndTimeMillis
+    ) {
+        return createProcessorThread(processorProvider, threadId, configurationObject, threadStatusChangeListener,
+                processorEndTimeMillis, IdleStrategy.blocking());
+    }
+
+    /**
+     * @param idleStrategy how the processor waits for the input, when it's IDLE. Ignored in pooled mode
+     */
+    <T> ProcessorThread createProcessorThread(
+            ProcessorProvider<T> processorProvider,
+            Long threadId,
+            T configurationObject,
+            ProcessorThreadListener threadStatusChangeListener,
+            long processorEndTimeMillis,
+            IdleStrategy idleStrategy
     );
 
     <T> ProcessorThread createSimulationReplay(
@@ -10,4 +10,11 @@ public interface ProcessorTimeProvider {
      */
     long getMillis();
 
+    /**
+     * Monotonic time with nanosecond resolution, used for sub-millisecond wakeups. It's not related to getMillis()
+     * and can be compared only with other values of getNanos()
+     */
+    default long getNanos() {
+        return System.nanoTime();
+    }
 }
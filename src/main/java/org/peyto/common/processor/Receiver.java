@@ -1,5 +1,8 @@
 package org.peyto.common.processor;
 
+import java.util.Collection;
+import java.util.function.Consumer;
+
 public interface Receiver<T> {
 
     T receive();
@@ -7,4 +10,33 @@ public interface Receiver<T> {
     boolean hasData();
 
     void clear();
+
+    /**
+     * @return number of received, but not consumed objects. It's read-only and might be approximate while producers
+     * are offering concurrently. The default is only 0 or 1, so existing receivers keep compiling, the framework
+     * inputs return the actual count
+     */
+    default int size() {
+        return hasData() ? 1 : 0;
+    }
+
+    /**
+     * Consume up to maxElements objects in one call, so the processor can take the whole backlog in one cycle
+     * instead of calling receive() per object (and going through the cycle per object)
+     *
+     * @return number of consumed objects
+     */
+    default int drainTo(Consumer<? super T> consumer, int maxElements) {
+        int drained = 0;
+        T obj;
+        while (drained < maxElements && (obj = receive()) != null) {
+            consumer.accept(obj);
+            drained++;
+        }
+        return drained;
+    }
+
+    default int drainTo(Collection<? super T> collection, int maxElements) {
+        return drainTo(collection::add, maxElements);
+    }
 }
@@ -0,0 +1,37 @@
+package org.peyto.common.processor;
+
+/**
+ * Producer side of the ring input, see {@link ProcessorProviderBinder#registerRingInput}.
+ * Slots are pre-allocated and reused, so publishing allocates nothing:
+ * <pre>
+ *     long sequence = publisher.claim();
+ *     publisher.slot(sequence).set(...);
+ *     publisher.publish(sequence);
+ * </pre>
+ * Each claimed sequence must be published, otherwise the processor will not receive the following slots.
+ * Publisher is thread safe, so it can be cached and shared by the producers
+ */
+public interface RingPublisher<E> {
+
+    /**
+     * Claim the next slot, waiting while the ring is full
+     *
+     * @return sequence of the claimed slot
+     */
+    long claim();
+
+    /**
+     * @return sequence of the claimed slot or -1, if the ring is full
+     */
+    long tryClaim();
+
+    /**
+     * @return the slot of claimed sequence to fill in
+     */
+    E slot(long sequence);
+
+    /**
+     * Make the slot visible to the processor and wake it up
+     */
+    void publish(long sequence);
+}
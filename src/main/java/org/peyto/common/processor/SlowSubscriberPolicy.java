@@ -0,0 +1,18 @@
+package org.peyto.common.processor;
+
+/**
+ * What happens, when the publisher of the broadcast channel laps the slowest subscriber
+ */
+public enum SlowSubscriberPolicy {
+    /**
+     * Publisher waits until the slowest subscriber reads the oldest element. Other publishers of the channel wait too,
+     * and a subscribed processor, which is not started yet, gates the channel as well
+     */
+    BLOCK_PUBLISHER,
+    /**
+     * Publisher never waits, the lapped subscriber skips to the oldest element, which is not
+     * being overwritten (so it keeps up to capacity - 1 latest elements).
+     * Skipped elements are counted per subscriber
+     */
+    SKIP_OLDEST;
+}
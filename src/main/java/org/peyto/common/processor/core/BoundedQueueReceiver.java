@@ -0,0 +1,220 @@
+package org.peyto.common.processor.core;
+
+import org.peyto.common.processor.BackpressurePolicy;
+import org.peyto.common.processor.BoundedReceiver;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import static org.peyto.common.processor.utils.CheckerUtils.checkArg;
+import static org.peyto.common.processor.utils.CheckerUtils.checkNotNull;
+
+/**
+ * Input queue of limited capacity, backed by array ring buffer. Policies need coordination between producers and
+ * consumer (e.g. DROP_OLDEST removes the head on behalf of the processor), so the queue is guarded by a lock.
+ * drainTo moves the batch out of the queue under one lock, the processor consumes it outside of the lock.
+ */
+public class BoundedQueueReceiver<T> implements InputReceiver<T>, BoundedReceiver<T> {
+
+    private final BackpressurePolicy policy;
+    private final Object[] elements;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    // guarded by lock
+    private int head = 0;
+    private int count = 0;
+
+    // used by the processor only
+    private final Object[] drainBuffer;
+
+    // written under the lock, volatile for the readers
+    private volatile long droppedCount = 0;
+    private volatile long rejectedCount = 0;
+    private volatile long blockedCount = 0;
+    private volatile long blockedTimeNanos = 0;
+
+    public BoundedQueueReceiver(int capacity, BackpressurePolicy policy) {
+        checkArg(capacity > 0, "Input capacity should be positive, but was %d", capacity);
+        this.policy = checkNotNull(policy, "policy");
+        this.elements = new Object[capacity];
+        this.drainBuffer = new Object[capacity];
+    }
+
+    @Override
+    public void offer(T obj) {
+        lock.lock();
+        try {
+            if (count == elements.length) {
+                switch (policy) {
+                    case BLOCK_PRODUCER:
+                        awaitNotFull();
+                        break;
+                    case REJECT:
+                        rejectedCount++;
+                        throw new IllegalStateException(String.format("Input queue is full, capacity %d", elements.length));
+                    case DROP_OLDEST:
+                        droppedCount++;
+                        pollUnderLock();
+                        break;
+                    case DROP_NEWEST:
+                        droppedCount++;
+                        return;
+                }
+            }
+            elements[(head + count) % elements.length] = obj;
+            count++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public T receive() {
+        lock.lock();
+        try {
+            return pollUnderLock();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public int drainTo(Consumer<? super T> consumer, int maxElements) {
+        int drained = 0;
+        lock.lock();
+        try {
+            while (drained < maxElements && count > 0) {
+                drainBuffer[drained++] = pollUnderLock();
+            }
+        } finally {
+            lock.unlock();
+        }
+        int consumed = 0;
+        try {
+            while (consumed < drained) {
+                T obj = (T) drainBuffer[consumed];
+                drainBuffer[consumed++] = null;
+                consumer.accept(obj);
+            }
+        } finally {
+            if (consumed < drained) {
+                returnToHead(consumed, drained);
+            }
+        }
+        return drained;
+    }
+
+    /**
+     * Consumer has failed, return not consumed objects of the drain buffer to the head of the queue, like
+     * {@link QueueReceiver} does. Producers may have filled the freed space meanwhile, the oldest objects, which
+     * don't fit anymore, are counted as dropped
+     */
+    private void returnToHead(int from, int to) {
+        lock.lock();
+        try {
+            for (int i = to - 1; i >= from; i--) {
+                if (count < elements.length) {
+                    head = (head - 1 + elements.length) % elements.length;
+                    elements[head] = drainBuffer[i];
+                    count++;
+                } else {
+                    droppedCount++;
+                }
+                drainBuffer[i] = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean hasData() {
+        return size() > 0;
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            while (count > 0) {
+                pollUnderLock();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int capacity() {
+        return elements.length;
+    }
+
+    @Override
+    public BackpressurePolicy policy() {
+        return policy;
+    }
+
+    @Override
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    @Override
+    public long getBlockedCount() {
+        return blockedCount;
+    }
+
+    @Override
+    public long getBlockedTimeNanos() {
+        return blockedTimeNanos;
+    }
+
+    private void awaitNotFull() {
+        blockedCount++;
+        long startNanos = System.nanoTime();
+        try {
+            while (count == elements.length) {
+                notFull.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejectedCount++;
+            throw new IllegalStateException("Producer was interrupted, while waiting for the full input queue", e);
+        } finally {
+            blockedTimeNanos += System.nanoTime() - startNanos;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T pollUnderLock() {
+        if (count == 0) {
+            return null;
+        }
+        T obj = (T) elements[head];
+        elements[head] = null;
+        head = (head + 1) % elements.length;
+        count--;
+        if (policy == BackpressurePolicy.BLOCK_PRODUCER) {
+            notFull.signal();
+        }
+        return obj;
+    }
+}
@@ -0,0 +1,59 @@
+package org.peyto.common.processor.core;
+
+import org.peyto.common.processor.ProcessorTimeProvider;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.peyto.common.processor.utils.CheckerUtils.checkArg;
+
+/**
+ * Time provider (enabled by processor.time.provider=cached), which reads the clock in a single ticking thread and
+ * publishes it as a volatile field, so getMillis() is a plain volatile read for all the processor threads.
+ * The time is behind the system clock by up to the resolution (plus park overshoot). getNanos() isn't cached,
+ * sub-millisecond wakeups still need the precise clock.
+ */
+@Service
+@ConditionalOnProcessorProperty(name = "processor.time.provider", havingValue = "cached")
+public class CachedClockTimeProvider implements ProcessorTimeProvider, DisposableBean {
+
+    private final long resolutionNanos;
+    private final Thread clockThread;
+
+    private volatile long currentMillis;
+    private volatile boolean running = true;
+
+    public CachedClockTimeProvider(@Value("${processor.time.resolution-millis:1}") long resolutionMillis) {
+        checkArg(resolutionMillis > 0, "Clock resolution should be positive, but was %d", resolutionMillis);
+        this.resolutionNanos = TimeUnit.MILLISECONDS.toNanos(resolutionMillis);
+        this.currentMillis = System.currentTimeMillis();
+        this.clockThread = new Thread(this::tick, "processor-clock");
+        clockThread.setDaemon(true);
+        clockThread.start();
+    }
+
+    @Override
+    public long getMillis() {
+        return currentMillis;
+    }
+
+    @Override
+    public void destroy() {
+        running = false;
+        LockSupport.unpark(clockThread);
+    }
+
+    private void tick() {
+        while (running) {
+            long millis = System.currentTimeMillis();
+            // never goes back, processors expect monotonic cycle time
+            if (millis > currentMillis) {
+                currentMillis = millis;
+            }
+            LockSupport.parkNanos(this, resolutionNanos);
+        }
+    }
+}
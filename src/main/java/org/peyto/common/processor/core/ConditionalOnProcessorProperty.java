@@ -0,0 +1,26 @@
+package org.peyto.common.processor.core;
+
+import org.springframework.context.annotation.Conditional;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Lightweight replacement of spring-boot ConditionalOnProperty (the framework depends on spring-context only).
+ * Allows choosing between alternative framework services with a single property, e.g. processor.scheduler.type
+ */
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Conditional(OnProcessorPropertyCondition.class)
+public @interface ConditionalOnProcessorProperty {
+
+    String name();
+
+    String havingValue();
+
+    boolean matchIfMissing() default false;
+}
@@ -0,0 +1,94 @@
+package org.peyto.common.processor.core;
+
+import org.peyto.common.processor.ConflatingReceiver;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static org.peyto.common.processor.utils.CheckerUtils.checkNotNull;
+
+/**
+ * Keeps only the latest pending input per key. A new input replaces the pending one with the same key in place,
+ * so the inputs are received in order of the first arrival of their keys and the backlog is bounded by the number
+ * of keys.
+ */
+public class ConflatingQueueReceiver<T, K> implements InputReceiver<T>, ConflatingReceiver<T> {
+
+    private final Function<? super T, ? extends K> keyExtractor;
+
+    // insertion order isn't changed, when the value of existing key is replaced
+    private final LinkedHashMap<K, T> pending = new LinkedHashMap<>();
+    // Used by the processor only, so the consumer is called outside of the lock
+    private final ArrayList<T> drainBuffer = new ArrayList<>();
+
+    private volatile long conflatedCount = 0;
+
+    public ConflatingQueueReceiver(Function<? super T, ? extends K> keyExtractor) {
+        this.keyExtractor = checkNotNull(keyExtractor, "keyExtractor");
+    }
+
+    @Override
+    public void offer(T obj) {
+        K key = keyExtractor.apply(obj);
+        synchronized (this) {
+            if (pending.put(key, obj) != null) {
+                conflatedCount++;
+            }
+        }
+    }
+
+    @Override
+    public synchronized T receive() {
+        Iterator<T> iterator = pending.values().iterator();
+        if (!iterator.hasNext()) {
+            return null;
+        }
+        T obj = iterator.next();
+        iterator.remove();
+        return obj;
+    }
+
+    @Override
+    public int drainTo(Consumer<? super T> consumer, int maxElements) {
+        synchronized (this) {
+            Iterator<T> iterator = pending.values().iterator();
+            while (drainBuffer.size() < maxElements && iterator.hasNext()) {
+                drainBuffer.add(iterator.next());
+                iterator.remove();
+            }
+        }
+        // not consumed objects can't be returned without breaking conflation, so they are dropped if consumer fails
+        try {
+            for (int i = 0; i < drainBuffer.size(); i++) {
+                consumer.accept(drainBuffer.get(i));
+            }
+            return drainBuffer.size();
+        } finally {
+            drainBuffer.clear();
+        }
+    }
+
+    @Override
+    public synchronized boolean hasData() {
+        return !pending.isEmpty();
+    }
+
+    @Override
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    @Override
+    public synchronized void clear() {
+        pending.clear();
+    }
+
+    @Override
+    public long getConflatedCount() {
+        return conflatedCount;
+    }
+}
@@ -4,6 +4,7 @@ import org.peyto.common.processor.ProcessorTimeProvider;
 import org.springframework.stereotype.Service;
 
 @Service
+@ConditionalOnProcessorProperty(name = "processor.time.provider", havingValue = "system", matchIfMissing = true)
 public class DefaultProcessorTimeProvider implements ProcessorTimeProvider {
 
     @Override
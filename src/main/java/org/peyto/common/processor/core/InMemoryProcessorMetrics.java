@@ -0,0 +1,179 @@
+package org.peyto.common.processor.core;
+
+import org.peyto.common.processor.ProcessorResult;
+import org.peyto.common.processor.Receiver;
+import org.peyto.common.processor.metrics.ProcessorMetrics;
+import org.peyto.common.processor.utils.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Metrics of a single processor, kept by {@link InMemoryProcessorMetricsRegistry}.
+ * Recording is lock-free, getters can be called by any thread
+ */
+public class InMemoryProcessorMetrics implements ProcessorMetrics {
+
+    private static final ProcessorResult[] RESULTS = ProcessorResult.values();
+
+    private final long threadId;
+    private final String processorName;
+
+    private final LatencyHistogram cycleNanos = new LatencyHistogram();
+    private final AtomicLongArray cycles = new AtomicLongArray(RESULTS.length);
+    private final AtomicLong exceptions = new AtomicLong();
+    private final LatencyHistogram wakeLatencyNanos = new LatencyHistogram();
+
+    // indexed by the input index, copied on registration so recording doesn't need a lookup in the map
+    private volatile InputMetrics[] inputs = new InputMetrics[0];
+
+    public InMemoryProcessorMetrics(long threadId, String processorName) {
+        this.threadId = threadId;
+        this.processorName = processorName;
+    }
+
+    @Override
+    public void onInputRegistered(int index, Receiver<?> receiver) {
+        onInputRegistered(index, receiver, receiver instanceof MpscQueueReceiver);
+    }
+
+    @Override
+    public synchronized void onInputRegistered(int index, Receiver<?> receiver, boolean latencyRecorded) {
+        InputMetrics[] newInputs = Arrays.copyOf(inputs, Math.max(inputs.length, index + 1));
+        newInputs[index] = new InputMetrics(index, receiver, latencyRecorded);
+        inputs = newInputs;
+    }
+
+    @Override
+    public void recordCycle(ProcessorResult result, long durationNanos) {
+        cycleNanos.record(durationNanos);
+        cycles.incrementAndGet(result.ordinal());
+    }
+
+    @Override
+    public void recordException() {
+        exceptions.incrementAndGet();
+    }
+
+    @Override
+    public void recordWakeLatency(long latencyNanos) {
+        wakeLatencyNanos.record(latencyNanos);
+    }
+
+    @Override
+    public void recordInputLatency(int index, long latencyNanos) {
+        InputMetrics[] currentInputs = inputs;
+        if (index < currentInputs.length && currentInputs[index] != null) {
+            currentInputs[index].latencyNanos.record(latencyNanos);
+        }
+    }
+
+    public long getThreadId() {
+        return threadId;
+    }
+
+    public String getProcessorName() {
+        return processorName;
+    }
+
+    public LatencyHistogram getCycleNanos() {
+        return cycleNanos;
+    }
+
+    public LatencyHistogram getWakeLatencyNanos() {
+        return wakeLatencyNanos;
+    }
+
+    public long getCycles(ProcessorResult result) {
+        return cycles.get(result.ordinal());
+    }
+
+    /**
+     * @return share of BUSY cycles, 0 if the processor hasn't run any cycle yet
+     */
+    public double getBusyRatio() {
+        long busy = getCycles(ProcessorResult.BUSY);
+        long total = 0;
+        for (ProcessorResult result : RESULTS) {
+            total += getCycles(result);
+        }
+        return total == 0 ? 0 : (double) busy / total;
+    }
+
+    public long getExceptions() {
+        return exceptions.get();
+    }
+
+    public List<InputMetrics> getInputs() {
+        List<InputMetrics> result = new ArrayList<>();
+        for (InputMetrics input : inputs) {
+            if (input != null) {
+                result.add(input);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder()
+                .append(processorName).append('-').append(threadId)
+                .append(" {busyRatio=").append(String.format("%.3f", getBusyRatio()))
+                .append(", exceptions=").append(getExceptions())
+                .append(", cycleNanos=").append(cycleNanos)
+                .append(", wakeLatencyNanos=").append(wakeLatencyNanos);
+        for (InputMetrics input : getInputs()) {
+            sb.append(", ").append(input);
+        }
+        return sb.append('}').toString();
+    }
+
+    public static class InputMetrics {
+
+        private final int index;
+        private final Receiver<?> receiver;
+        private final boolean latencyRecorded;
+        private final LatencyHistogram latencyNanos = new LatencyHistogram();
+
+        InputMetrics(int index, Receiver<?> receiver, boolean latencyRecorded) {
+            this.index = index;
+            this.receiver = receiver;
+            this.latencyRecorded = latencyRecorded;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * @return approximate number of objects waiting in the input
+         */
+        public int getQueueDepth() {
+            return receiver.size();
+        }
+
+        /**
+         * @return false, if the input doesn't stamp the offer time (bounded, conflating, ring and broadcast inputs),
+         * so its latency histogram stays empty
+         */
+        public boolean isLatencyRecorded() {
+            return latencyRecorded;
+        }
+
+        /**
+         * @return enqueue-to-process latency, recorded for unbounded inputs only, see {@link #isLatencyRecorded()}
+         */
+        public LatencyHistogram getLatencyNanos() {
+            return latencyNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "input-" + index + " {depth=" + getQueueDepth() + ", latencyNanos="
+                    + (latencyRecorded ? latencyNanos.toString() : "not recorded") + "}";
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package org.peyto.common.processor.core;
+
+import org.peyto.common.processor.metrics.ProcessorMetrics;
+import org.peyto.common.processor.metrics.ProcessorMetricsRegistry;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Default metrics registry: keeps the metrics of running processors in memory, so they can be inspected
+ * (e.g. by the application endpoint) to find slow processors without a profiler
+ */
+@Service
+@ConditionalOnProcessorProperty(name = "processor.metrics.type", havingValue = "in-memory", matchIfMissing = true)
+public class InMemoryProcessorMetricsRegistry implements ProcessorMetricsRegistry {
+
+    private final Map<Long, InMemoryProcessorMetrics> metrics = new ConcurrentHashMap<>();
+
+    @Override
+    public ProcessorMetrics register(long threadId, String processorName) {
+        InMemoryProcessorMetrics processorMetrics = new InMemoryProcessorMetrics(threadId, processorName);
+        metrics.put(threadId, processorMetrics);
+        return processorMetrics;
+    }
+
+    @Override
+    public void unregister(long threadId) {
+        metrics.remove(threadId);
+    }
+
+    /**
+     * @return metrics of the processor, or null if it is not running
+     */
+    public InMemoryProcessorMetrics getMetrics(long threadId) {
+        return metrics.get(threadId);
+    }
+
+    public Collection<InMemoryProcessorMetrics> getAllMetrics() {
+        return new ArrayList<>(metrics.values());
+    }
+}
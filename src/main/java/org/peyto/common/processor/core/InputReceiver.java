@@ -0,0 +1,12 @@
+package org.peyto.common.processor.core;
+
+import org.peyto.common.processor.Receiver;
+
+/**
+ * Producer side of the processor input: offer is called by any thread, while {@link Receiver} methods are called by
+ * the processor only
+ */
+public interface InputReceiver<T> extends Receiver<T> {
+
+    void offer(T obj);
+}
@@ -0,0 +1,170 @@
+package org.peyto.common.processor.core;
+
+import org.peyto.common.processor.metrics.ProcessorMetrics;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.Consumer;
+
+/**
+ * Lock-free unbounded multi-producer/single-consumer queue (intrusive linked queue by D. Vyukov).
+ * Producers swap the tail with one atomic operation, and the processor polls the head with one volatile read,
+ * no locks are taken on either side. Head and tail are padded, so producers and the consumer don't share cache lines.
+ * <p>
+ * Receiver methods should be called by the processor only, which is the single consumer.
+ * <p>
+ * If the metrics are enabled, nodes are stamped with the offer time, and enqueue-to-process latency is recorded on receive.
+ */
+public class MpscQueueReceiver<T> extends MpscQueueReceiverHeadPad<T> implements InputReceiver<T> {
+
+    private long p10, p11, p12, p13, p14, p15, p16, p17;
+
+    private final int index;
+    // bound once, before the processor is started
+    private ProcessorMetrics metrics;
+    private boolean timestamped;
+
+    public MpscQueueReceiver() {
+        this(0, ProcessorMetrics.NOOP);
+    }
+
+    public MpscQueueReceiver(int index, ProcessorMetrics metrics) {
+        this.index = index;
+        this.metrics = metrics;
+        this.timestamped = metrics.isEnabled();
+        Node<T> stub = new Node<>(null);
+        head = stub;
+        tail = stub;
+    }
+
+    void bindMetrics(ProcessorMetrics metrics) {
+        this.metrics = metrics;
+        this.timestamped = metrics.isEnabled();
+    }
+
+    @Override
+    public void offer(T obj) {
+        Node<T> node = new Node<>(obj);
+        if (timestamped) {
+            node.enqueueNanos = System.nanoTime();
+        }
+        // counted before publishing, so size() never goes below zero
+        OFFERED_UPDATER.getAndIncrement(this);
+        @SuppressWarnings("unchecked")
+        Node<T> previous = (Node<T>) TAIL_UPDATER.getAndSet(this, node);
+        // ordered store is enough, the consumer reads next as volatile
+        Node.NEXT_UPDATER.lazySet(previous, node);
+    }
+
+    @Override
+    public T receive() {
+        Node<T> next = head.next;
+        if (next == null) {
+            return null;
+        }
+        T value = next.value;
+        next.value = null;
+        head = next;
+        if (timestamped) {
+            metrics.recordInputLatency(index, System.nanoTime() - next.enqueueNanos);
+        }
+        RECEIVED_UPDATER.lazySet(this, received + 1);
+        return value;
+    }
+
+    @Override
+    public int drainTo(Consumer<? super T> consumer, int maxElements) {
+        int drained = 0;
+        // one clock read per drain, the whole backlog is taken by the processor at once
+        long nowNanos = timestamped ? System.nanoTime() : 0;
+        try {
+            Node<T> next;
+            while (drained < maxElements && (next = head.next) != null) {
+                T value = next.value;
+                next.value = null;
+                head = next;
+                drained++;
+                if (timestamped) {
+                    metrics.recordInputLatency(index, nowNanos - next.enqueueNanos);
+                }
+                consumer.accept(value);
+            }
+        } finally {
+            RECEIVED_UPDATER.lazySet(this, received + drained);
+        }
+        return drained;
+    }
+
+    @Override
+    public boolean hasData() {
+        return head.next != null;
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, offered - received);
+    }
+
+    @Override
+    public void clear() {
+        while (receive() != null) {
+            // drop all the received objects
+        }
+    }
+
+    static final class Node<T> {
+
+        @SuppressWarnings("rawtypes")
+        static final AtomicReferenceFieldUpdater<Node, Node> NEXT_UPDATER = AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "next");
+
+        T value;
+        // published with the node by the tail swap
+        long enqueueNanos;
+        volatile Node<T> next;
+
+        Node(T value) {
+            this.value = value;
+        }
+    }
+}
+
+/*
+ * Field padding is done by the class hierarchy, because JVM lays out the fields of the super class first
+ */
+
+abstract class MpscQueueReceiverPad {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+}
+
+abstract class MpscQueueReceiverTail<T> extends MpscQueueReceiverPad {
+
+    @SuppressWarnings("rawtypes")
+    static final AtomicReferenceFieldUpdater<MpscQueueReceiverTail, MpscQueueReceiver.Node> TAIL_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(MpscQueueReceiverTail.class, MpscQueueReceiver.Node.class, "tail");
+    @SuppressWarnings("rawtypes")
+    static final AtomicLongFieldUpdater<MpscQueueReceiverTail> OFFERED_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(MpscQueueReceiverTail.class, "offered");
+
+    // written by producers
+    volatile MpscQueueReceiver.Node<T> tail;
+    volatile long offered;
+}
+
+abstract class MpscQueueReceiverTailPad<T> extends MpscQueueReceiverTail<T> {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+}
+
+abstract class MpscQueueReceiverHead<T> extends MpscQueueReceiverTailPad<T> {
+
+    @SuppressWarnings("rawtypes")
+    static final AtomicLongFieldUpdater<MpscQueueReceiverHead> RECEIVED_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(MpscQueueReceiverHead.class, "received");
+
+    // owned by the consumer, received is volatile only for size() readers
+    MpscQueueReceiver.Node<T> head;
+    volatile long received;
+}
+
+abstract class MpscQueueReceiverHeadPad<T> extends MpscQueueReceiverHead<T> {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+}
@@ -0,0 +1,19 @@
+package org.peyto.common.processor.core;
+
+import org.peyto.common.processor.metrics.ProcessorMetrics;
+import org.peyto.common.processor.metrics.ProcessorMetricsRegistry;
+import org.springframework.stereotype.Service;
+
+@Service
+@ConditionalOnProcessorProperty(name = "processor.metrics.type", havingValue = "none")
+public class NoopProcessorMetricsRegistry implements ProcessorMetricsRegistry {
+
+    @Override
+    public ProcessorMetrics register(long threadId, String processorName) {
+        return ProcessorMetrics.NOOP;
+    }
+
+    @Override
+    public void unregister(long threadId) {
+    }
+}
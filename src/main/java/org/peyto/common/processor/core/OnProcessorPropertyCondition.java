@@ -0,0 +1,23 @@
+package org.peyto.common.processor.core;
+
+import org.springframework.context.annotation.Condition;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+
+import java.util.Map;
+
+class OnProcessorPropertyCondition implements Condition {
+
+    @Override
+    public boolean matches(ConditionContext context, AnnotatedTypeMetadata metadata) {
+        Map<String, Object> attributes = metadata.getAnnotationAttributes(ConditionalOnProcessorProperty.class.getName());
+        if (attributes == null) {
+            return true;
+        }
+        String value = context.getEnvironment().getProperty((String) attributes.get("name"));
+        if (value == null) {
+            return (Boolean) attributes.get("matchIfMissing");
+        }
+        return ((String) attributes.get("havingValue")).equalsIgnoreCase(value.trim());
+    }
+}
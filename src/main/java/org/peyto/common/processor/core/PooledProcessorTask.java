@@ -0,0 +1,152 @@
+package org.peyto.common.processor.core;
+
+import org.peyto.common.processor.*;
+import org.peyto.common.processor.core.schedule.ProcessorScheduler;
+import org.peyto.common.processor.core.trace.CycleTrace;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Processor Thread, which doesn't own a thread: processor cycles are executed as tasks of the shared pool.
+ * The class is not public, the user should use ProcessorThreadFactory (processor.thread.mode=pooled)
+ * <p>
+ * The task is submitted to the pool on start, input or scheduled wakeup, and it's re-submitted while the processor
+ * is BUSY (every cyclesPerTask cycles, so other processors are not starved). The state machine guarantees there is
+ * at most one task of the processor in the pool, so the processor is never executed by two threads at once,
+ * and its cycles are ordered. Executor provides happens-before between the tasks, so the processor doesn't need
+ * any synchronization of its state.
+ * @param <T> class of configuration object
+ */
+class PooledProcessorTask<T> implements ProcessorThread {
+
+    private static final int NEW = 0;
+    private static final int IDLE = 1;
+    private static final int QUEUED = 2;
+    private static final int RUNNING = 3;
+    // signal was received during the cycle, so the processor shouldn't become idle
+    private static final int RUNNING_SIGNALLED = 4;
+    private static final int FINISHED = 5;
+
+    private final ProcessorRuntime<T> runtime;
+    private final Executor executor;
+    private final int cyclesPerTask;
+
+    private final AtomicInteger state = new AtomicInteger(NEW);
+    private boolean initialized = false;
+
+    PooledProcessorTask(ProcessorProvider<T> processorProvider,
+                        long threadId,
+                        T configurationObject,
+                        InternalProcessorContext processorContext,
+                        ProcessorScheduler processorScheduler,
+                        ProcessorThreadListener threadStatusChangeListener,
+                        ProcessorRuntimeOptions runtimeOptions,
+                        Executor executor,
+                        int cyclesPerTask) {
+        this.executor = executor;
+        this.cyclesPerTask = cyclesPerTask;
+        this.runtime = new ProcessorRuntime<>(this, threadId, processorProvider, configurationObject,
+                processorContext, processorScheduler, threadStatusChangeListener, runtimeOptions);
+        runtime.attachBroadcastInputs();
+    }
+
+    @Override
+    public void start() {
+        if (!state.compareAndSet(NEW, QUEUED)) {
+            throw new IllegalStateException("Processor " + runtime.getCustomId() + " has already been started");
+        }
+        executor.execute(this);
+    }
+
+    @Override
+    public void onInput(int index, Object input) {
+        runtime.offer(index, input);
+        signal(CycleTrace.WakeReason.INPUT, index, CycleTrace.UNKNOWN);
+    }
+
+    @Override
+    public void wakeProcessor() {
+        signal(CycleTrace.WakeReason.SIGNAL, (int) CycleTrace.UNKNOWN, CycleTrace.UNKNOWN);
+    }
+
+    @Override
+    public void onScheduledWakeup(long deadlineMillis) {
+        signal(CycleTrace.WakeReason.TIMER, (int) CycleTrace.UNKNOWN, deadlineMillis);
+    }
+
+    private void signal(CycleTrace.WakeReason reason, int inputIndex, long deadlineMillis) {
+        while (true) {
+            int currentState = state.get();
+            if (currentState == IDLE) {
+                runtime.onSignal(reason, inputIndex, deadlineMillis);
+                if (state.compareAndSet(IDLE, QUEUED)) {
+                    executor.execute(this);
+                    return;
+                }
+            } else if (currentState == RUNNING) {
+                runtime.onSignal(reason, inputIndex, deadlineMillis);
+                if (state.compareAndSet(RUNNING, RUNNING_SIGNALLED)) {
+                    return;
+                }
+            } else {
+                // not started yet (inputs will be processed after start), already queued/signalled or finished
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        state.set(RUNNING);
+        try {
+            runCycles();
+        } catch (RuntimeException | Error e) {
+            // init failed or the cycle has thrown an Error, the processor can't continue. Without finish it would stay
+            // RUNNING for ever, ignoring the signals, and its scheduler, listener and metrics entries would leak
+            state.set(FINISHED);
+            runtime.finish();
+            throw e;
+        }
+    }
+
+    private void runCycles() {
+        if (!initialized) {
+            runtime.init();
+            initialized = true;
+        }
+        for (int cycle = 0; cycle < cyclesPerTask; cycle++) {
+            if (!runtime.isRunning()) {
+                state.set(FINISHED);
+                runtime.finish();
+                return;
+            }
+            ProcessorResult result = runtime.runCycle();
+            if (result == ProcessorResult.IDLE) {
+                if (state.compareAndSet(RUNNING, IDLE)) {
+                    return;
+                }
+                // signalled during the cycle, continue
+                state.set(RUNNING);
+            }
+        }
+        // still busy, give other processors a chance
+        state.set(QUEUED);
+        executor.execute(this);
+    }
+
+    @Override
+    public <E> RingPublisher<E> getRingPublisher(int index) {
+        return runtime.getRingPublisher(index, this);
+    }
+
+    @Override
+    public long getCustomId() {
+        return runtime.getCustomId();
+    }
+
+    @Override
+    public Object getProcessorState(Object... request) {
+        return runtime.getProcessorState(request);
+    }
+}
@@ -0,0 +1,123 @@
+package org.peyto.common.processor.core;
+
+import org.peyto.common.processor.IdleStrategy;
+import org.peyto.common.processor.ProcessorProvider;
+import org.peyto.common.processor.ProcessorThread;
+import org.peyto.common.processor.ProcessorThreadFactory;
+import org.peyto.common.processor.ProcessorThreadListener;
+import org.peyto.common.processor.ProcessorTimeProvider;
+import org.peyto.common.processor.core.schedule.ProcessorScheduler;
+import org.peyto.common.processor.core.trace.CycleTracer;
+import org.peyto.common.processor.metrics.ProcessorMetricsRegistry;
+import org.peyto.common.processor.simulation.ManualSimulationController;
+import org.peyto.common.processor.simulation.ReplayData;
+import org.peyto.common.processor.simulation.SimulationContext;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.peyto.common.processor.utils.CheckerUtils.checkArg;
+
+/**
+ * Factory of processors, multiplexed onto the fixed pool of carrier threads (processor.thread.mode=pooled).
+ * Suits large number of processors, which are IDLE most of the time: there is no OS thread per processor.
+ * Processors shouldn't block inside process(), because it blocks the carrier thread.
+ */
+@Service
+@ConditionalOnProcessorProperty(name = "processor.thread.mode", havingValue = "pooled")
+public class PooledProcessorThreadFactory implements ProcessorThreadFactory, DisposableBean {
+
+    private final ProcessorScheduler processorScheduler;
+    private final ProcessorTimeProvider processorTimeProvider;
+    private final boolean dedupeWakeups;
+    private final ProcessorRuntimeOptions runtimeOptions;
+    private final int cyclesPerTask;
+
+    private final ExecutorService executor;
+    // Ids of processors, created without id. Negative, so they don't clash with the ids passed by the user
+    private final AtomicLong lastGeneratedId = new AtomicLong(Long.MIN_VALUE / 2);
+
+    public PooledProcessorThreadFactory(ProcessorScheduler processorScheduler,
+                                        ProcessorTimeProvider processorTimeProvider,
+                                        @Value("${processor.pool.threads:0}") int poolThreads,
+                                        @Value("${processor.pool.cycles-per-task:64}") int cyclesPerTask,
+                                        @Value("${processor.scheduler.dedupe-wakeups:false}") boolean dedupeWakeups,
+                                        ProcessorMetricsRegistry metricsRegistry,
+                                        StallWatchdog stallWatchdog,
+                                        CycleTracer cycleTracer) {
+        checkArg(cyclesPerTask > 0, "processor.pool.cycles-per-task should be positive, but was %d", cyclesPerTask);
+        this.processorScheduler = processorScheduler;
+        this.processorTimeProvider = processorTimeProvider;
+        this.dedupeWakeups = dedupeWakeups;
+        this.runtimeOptions = ProcessorRuntimeOptions.DEFAULT.withMetricsRegistry(metricsRegistry)
+                .withStallWatchdog(stallWatchdog)
+                .withCycleTracer(cycleTracer);
+        this.cyclesPerTask = cyclesPerTask;
+        int threads = poolThreads > 0 ? poolThreads : Runtime.getRuntime().availableProcessors();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new CarrierThreadFactory());
+    }
+
+    @Override
+    public <T> ProcessorThread createProcessorThread(ProcessorProvider<T> processorProvider, Long threadId, T configurationObject, ProcessorThreadListener threadStatusChangeListener, long processorEndTimeMillis, IdleStrategy idleStrategy) {
+        long customThreadId = threadId != null ? threadId : lastGeneratedId.incrementAndGet();
+        return new PooledProcessorTask<>(
+                processorProvider,
+                customThreadId,
+                configurationObject,
+                new ProcessorContextImpl(customThreadId, processorScheduler, processorTimeProvider, processorEndTimeMillis, dedupeWakeups),
+                processorScheduler,
+                threadStatusChangeListener,
+                runtimeOptions,
+                executor,
+                cyclesPerTask
+        );
+    }
+
+    @Override
+    public <T> ProcessorThread createSimulationReplay(ProcessorProvider<T> processorProvider, long threadId, T configurationObject, ProcessorThreadListener threadStatusChangeListener, ReplayData<T> replayData) {
+        SimulationContext simulationContext = new SimulationContext(replayData.getCycleData());
+        return new PooledProcessorTask<>(
+                processorProvider,
+                replayData.getThreadId(),
+                replayData.getConfigurationObject(),
+                simulationContext,
+                processorScheduler,
+                simulationContext,
+                ProcessorRuntimeOptions.DEFAULT,
+                executor,
+                cyclesPerTask
+        );
+    }
+
+    @Override
+    public <T> ProcessorThread createSimulationManual(ProcessorProvider<T> processorProvider, long threadId, T configurationObject, ProcessorThreadListener threadStatusChangeListener, ManualSimulationController manualSimulationController) {
+        throw new RuntimeException("Manual Simulation is not implemented at the moment");
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private static class CarrierThreadFactory implements ThreadFactory {
+
+        private final ThreadGroup threadGroup = new ThreadGroup("processor-pool");
+        private final AtomicInteger threadNumber = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(threadGroup, runnable, "processor-pool-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -1,48 +1,69 @@
 package org.peyto.common.processor.core;
 
+import org.peyto.common.processor.PeriodicMode;
 import org.peyto.common.processor.ProcessorContext;
 import org.peyto.common.processor.ProcessorTimeProvider;
+import org.peyto.common.processor.core.jfr.ProcessorEvents;
 import org.peyto.common.processor.core.schedule.ProcessorScheduler;
 
-import java.util.concurrent.atomic.AtomicLong;
-
 public class ProcessorContextImpl implements InternalProcessorContext {
 
     private final long threadId;
     private final ProcessorScheduler scheduler;
 
     private final ProcessorTimeProvider processorTimeProvider;
-    private final AtomicLong currentCycleTimeMillis = new AtomicLong();
-    private final AtomicLong currentCycleNumber = new AtomicLong(0);
+    // Owned by the processor: written before the cycle and read in the cycle by the same thread (pooled processors
+    // get happens-before from the executor), so no atomics are needed
+    private long currentCycleTimeMillis = 0;
+    private long currentCycleNumber = 0;
 
     private final long processorEndTimeMillis;
 
+    // Earliest-wins mode: the thread keeps only its earliest pending one-off wakeup, owned by the processor as well
+    private final boolean dedupeWakeups;
+    private long pendingWakeupMillis = 0;
+    // the latest moment the pending wakeup may fire, pendingWakeupMillis + its slack
+    private long pendingWakeupLatestMillis = 0;
+    private long pendingWakeupId = 0;
+
     public ProcessorContextImpl(long threadId, ProcessorScheduler scheduler, ProcessorTimeProvider processorTimeProvider, long processorEndTimeMillis) {
+        this(threadId, scheduler, processorTimeProvider, processorEndTimeMillis, false);
+    }
+
+    /**
+     * @param dedupeWakeups if true, scheduling the wakeup later than the pending one is a no-op (the pending id is
+     *                      returned), and scheduling the earlier one moves the pending wakeup. Wakeups with slack
+     *                      are compared by the latest moment they may fire. As processors are
+     *                      idempotent, the thread needs only its earliest wakeup, so the timeline is bounded by the
+     *                      number of threads and the processor doesn't get empty cycles for redundant wakeups
+     */
+    public ProcessorContextImpl(long threadId, ProcessorScheduler scheduler, ProcessorTimeProvider processorTimeProvider, long processorEndTimeMillis, boolean dedupeWakeups) {
         this.threadId = threadId;
         this.scheduler = scheduler;
         this.processorTimeProvider = processorTimeProvider;
         this.processorEndTimeMillis = processorEndTimeMillis;
+        this.dedupeWakeups = dedupeWakeups;
     }
 
     @Override
     public long calculateNextCycleNumber() {
-        return currentCycleNumber.incrementAndGet();
+        return ++currentCycleNumber;
     }
 
     @Override
     public long calculateNextCycleTime() {
-        currentCycleTimeMillis.set(processorTimeProvider.getMillis());
-        return currentCycleTimeMillis.get();
+        currentCycleTimeMillis = processorTimeProvider.getMillis();
+        return currentCycleTimeMillis;
     }
 
     @Override
     public long getCycleNumber() {
-        return currentCycleNumber.get();
+        return currentCycleNumber;
     }
 
     @Override
     public long getCycleTimeMillis() {
-        return currentCycleTimeMillis.get();
+        return currentCycleTimeMillis;
     }
 
     @Override
@@ -51,13 +72,60 @@ public class ProcessorContextImpl implements InternalProcessorContext {
     }
 
     @Override
-    public void scheduleWakeup(long timeMillis) {
-        scheduler.schedule(threadId, timeMillis);
+    public long scheduleWakeup(long timeMillis) {
+        long timerId = dedupeWakeups ? scheduleEarliestWakeup(timeMillis, 0) : scheduler.schedule(threadId, timeMillis);
+        ProcessorEvents.wakeupScheduled(threadId, timeMillis, timerId);
+        return timerId;
+    }
+
+    private long scheduleEarliestWakeup(long timeMillis, long slackMillis) {
+        long latestMillis = timeMillis + slackMillis;
+        // the wakeup, which is not later than the cycle time, has already fired or is firing right now
+        if (pendingWakeupId != 0 && pendingWakeupMillis > currentCycleTimeMillis) {
+            if (latestMillis >= pendingWakeupLatestMillis) {
+                return pendingWakeupId;
+            }
+            scheduler.cancel(threadId, pendingWakeupId);
+        }
+        pendingWakeupId = slackMillis > 0 ? scheduler.schedule(threadId, timeMillis, slackMillis) : scheduler.schedule(threadId, timeMillis);
+        pendingWakeupMillis = timeMillis;
+        pendingWakeupLatestMillis = latestMillis;
+        return pendingWakeupId;
+    }
+
+    @Override
+    public long scheduleWakeup(long timeMillis, long slackMillis) {
+        long timerId = dedupeWakeups ? scheduleEarliestWakeup(timeMillis, slackMillis) : scheduler.schedule(threadId, timeMillis, slackMillis);
+        ProcessorEvents.wakeupScheduled(threadId, timeMillis, timerId);
+        return timerId;
+    }
+
+    @Override
+    public long schedulePeriodic(long periodMillis, PeriodicMode mode) {
+        return scheduler.schedulePeriodic(threadId, currentCycleTimeMillis + periodMillis, periodMillis, mode);
+    }
+
+    @Override
+    public long scheduleWakeupNanos(long timeNanos) {
+        return scheduler.scheduleNanos(threadId, timeNanos);
+    }
+
+    @Override
+    public long currentTimeNanos() {
+        return processorTimeProvider.getNanos();
+    }
+
+    @Override
+    public boolean cancelWakeup(long wakeupId) {
+        if (wakeupId == pendingWakeupId) {
+            pendingWakeupId = 0;
+        }
+        return scheduler.cancel(threadId, wakeupId);
     }
 
     @Override
-    @Deprecated
     public void cancelAllScheduledWakeups() {
+        pendingWakeupId = 0;
         scheduler.cancelAllScheduled(threadId);
     }
 }
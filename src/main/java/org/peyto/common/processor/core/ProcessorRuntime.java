@@ -0,0 +1,393 @@
+package org.peyto.common.processor.core;
+
+import org.peyto.common.processor.BackpressurePolicy;
+import org.peyto.common.processor.BoundedReceiver;
+import org.peyto.common.processor.BroadcastChannel;
+import org.peyto.common.processor.ConflatingReceiver;
+import org.peyto.common.processor.Processor;
+import org.peyto.common.processor.ProcessorProvider;
+import org.peyto.common.processor.ProcessorProviderBinder;
+import org.peyto.common.processor.ProcessorResult;
+import org.peyto.common.processor.ProcessorThread;
+import org.peyto.common.processor.ProcessorThreadListener;
+import org.peyto.common.processor.Receiver;
+import org.peyto.common.processor.RingPublisher;
+import org.peyto.common.processor.core.jfr.ProcessorEvents;
+import org.peyto.common.processor.core.schedule.ProcessorScheduler;
+import org.peyto.common.processor.core.trace.CycleTrace;
+import org.peyto.common.processor.core.trace.CycleTraceBuffer;
+import org.peyto.common.processor.core.trace.CycleTracer;
+import org.peyto.common.processor.metrics.ProcessorMetrics;
+import org.peyto.common.processor.metrics.ProcessorMetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.peyto.common.processor.utils.CheckerUtils.checkArg;
+
+/**
+ * Part of the processor thread, which doesn't depend on how the cycles are executed (dedicated thread or shared pool):
+ * processor with its context and inputs, single cycle execution and finishing.
+ * The methods init/isRunning/runCycle/finish should never be called concurrently
+ * @param <T> class of configuration object
+ */
+class ProcessorRuntime<T> implements ProcessorProviderBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(ProcessorRuntime.class);
+
+    private final ProcessorThread processorThread;
+    private final long customThreadId;
+    private final ProcessorScheduler processorScheduler;
+    private final ProcessorThreadListener threadStatusChangeListener;
+    private final ProcessorMetricsRegistry metricsRegistry;
+    private final ProcessorMetrics metrics;
+    private final boolean metricsEnabled;
+    private final StallWatchdog stallWatchdog;
+    // null, if the watchdog is disabled
+    private final StallWatchdog.ProcessorStalls stalls;
+    private final CycleTracer cycleTracer;
+    // null, if tracing is disabled
+    private final CycleTraceBuffer traceBuffer;
+    // time of the first signal, not handled by a cycle yet, 0 if none
+    private final AtomicLong signalNanos = new AtomicLong();
+    // reason of the first signal, written only if traced. Might be mixed up by concurrent signals, it's diagnostics only
+    private volatile CycleTrace.WakeReason signalReason;
+    private volatile int signalInputIndex;
+    private volatile long signalDeadlineMillis;
+    // queue wait of the oldest input, consumed by the current cycle
+    private long oldestInputWaitNanos;
+
+    private final Processor processor;
+    private final InternalProcessorContext context;
+
+    private final ArrayList<InputReceiver<Object>> inputs = new ArrayList<>();
+    // slots received from ring inputs are released at the end of the cycle
+    private final ArrayList<RingBufferReceiver<?>> ringInputs = new ArrayList<>();
+    // detached on finish, so the channels don't wait for the finished processor
+    private final ArrayList<RingBroadcastChannel.Subscriber<?>> broadcastInputs = new ArrayList<>();
+
+    private final AtomicBoolean stoppingProcessor = new AtomicBoolean(false);
+
+    ProcessorRuntime(ProcessorThread processorThread,
+                     long customThreadId,
+                     ProcessorProvider<T> processorProvider,
+                     T configurationObject,
+                     InternalProcessorContext processorContext,
+                     ProcessorScheduler processorScheduler,
+                     ProcessorThreadListener threadStatusChangeListener,
+                     ProcessorRuntimeOptions options) {
+        this.processorThread = processorThread;
+        this.customThreadId = customThreadId;
+        this.metricsRegistry = options.getMetricsRegistry();
+        this.cycleTracer = options.getCycleTracer();
+        this.stallWatchdog = options.getStallWatchdog();
+        this.context = processorContext;
+        this.threadStatusChangeListener = threadStatusChangeListener;
+        this.processorScheduler = processorScheduler;
+        // created first, so it names the metrics, stalls and traces (providers are usually lambdas).
+        // Its inputs are bound to the metrics after the registration
+        try {
+            this.processor = processorProvider.get(configurationObject, this);
+        } catch (RuntimeException | Error e) {
+            unsubscribeBroadcastInputs();
+            throw e;
+        }
+        String processorName = processorName(processor);
+        boolean registered = false;
+        CycleTraceBuffer tracked = null;
+        boolean metricsRegistered = false;
+        ProcessorMetrics registeredMetrics = null;
+        try {
+            processorScheduler.registerThread(customThreadId, processorThread);
+            registered = true;
+            tracked = cycleTracer.track(customThreadId, processorName);
+            registeredMetrics = metricsRegistry.register(customThreadId, processorName);
+            metricsRegistered = true;
+            this.stalls = stallWatchdog.track(customThreadId, processorName);
+        } catch (RuntimeException | Error e) {
+            // e.g. duplicate thread id, nothing registered by this processor is left behind
+            unsubscribeBroadcastInputs();
+            if (registered) {
+                processorScheduler.onFinish(customThreadId);
+            }
+            if (tracked != null) {
+                cycleTracer.untrack(customThreadId);
+            }
+            if (metricsRegistered) {
+                metricsRegistry.unregister(customThreadId);
+            }
+            throw e;
+        }
+        this.traceBuffer = tracked;
+        // tracing needs the timings, even if the metrics are disabled
+        this.metrics = traceBuffer != null ? new TracingMetrics(registeredMetrics) : registeredMetrics;
+        this.metricsEnabled = metrics.isEnabled();
+        for (int index = 0; index < inputs.size(); index++) {
+            InputReceiver<Object> input = inputs.get(index);
+            // only unbounded inputs stamp the offer time
+            boolean latencyRecorded = input instanceof MpscQueueReceiver;
+            if (latencyRecorded) {
+                ((MpscQueueReceiver<Object>) input).bindMetrics(metrics);
+            }
+            metrics.onInputRegistered(index, input, latencyRecorded);
+        }
+    }
+
+    private static String processorName(Processor processor) {
+        String simpleName = processor.getClass().getSimpleName();
+        // anonymous processor
+        return simpleName.isEmpty() ? processor.getClass().getName() : simpleName;
+    }
+
+    /**
+     * Publishers of the broadcast inputs wake the processor thread, so they are attached by the thread, once it's fully
+     * built. Until then the channels publish to the subscription, but don't signal it
+     */
+    void attachBroadcastInputs() {
+        for (RingBroadcastChannel.Subscriber<?> broadcastInput : broadcastInputs) {
+            broadcastInput.attach(processorThread);
+        }
+    }
+
+    private void unsubscribeBroadcastInputs() {
+        for (RingBroadcastChannel.Subscriber<?> broadcastInput : broadcastInputs) {
+            broadcastInput.unsubscribe();
+        }
+    }
+
+    void init() {
+        processor.init(context);
+    }
+
+    /**
+     * Calculates the time of the next cycle, so should be called once before each cycle
+     */
+    boolean isRunning() {
+        return context.calculateNextCycleTime() <= context.processorEndTimeMillis() && !stoppingProcessor.get();
+    }
+
+    /**
+     * @return result of the processor cycle. In case of processor exception, the cycle is considered BUSY,
+     * so the processor is executed again
+     */
+    ProcessorResult runCycle() {
+        long startNanos = 0;
+        long signalToCycleNanos = CycleTrace.UNKNOWN;
+        if (metricsEnabled) {
+            startNanos = System.nanoTime();
+            long signalledNanos = signalNanos.getAndSet(0);
+            if (signalledNanos != 0) {
+                signalToCycleNanos = startNanos - signalledNanos;
+                metrics.recordWakeLatency(signalToCycleNanos);
+            }
+        }
+        CycleTrace.WakeReason wakeReason = null;
+        int inputIndex = (int) CycleTrace.UNKNOWN;
+        long scheduledWakeMillis = CycleTrace.UNKNOWN;
+        if (traceBuffer != null && traceBuffer.sample()) {
+            wakeReason = CycleTrace.WakeReason.BUSY;
+            if (signalToCycleNanos != CycleTrace.UNKNOWN) {
+                wakeReason = signalReason;
+                inputIndex = signalInputIndex;
+                scheduledWakeMillis = signalDeadlineMillis;
+            }
+            oldestInputWaitNanos = CycleTrace.UNKNOWN;
+        }
+        ProcessorResult result = ProcessorResult.BUSY;
+        Object cycleEvent = ProcessorEvents.beginCycle();
+        int queuedInputs = cycleEvent != null ? queuedInputs() : 0;
+        if (stalls != null) {
+            stalls.cycleStarted();
+        }
+        try {
+            context.calculateNextCycleNumber();
+            result = processor.process(context);
+            if (result == ProcessorResult.END) {
+                log.info("Processor task {} is finishing", customThreadId);
+                stoppingProcessor.set(true);
+            }
+            return result;
+        } catch (Exception e) {
+            handleException(e);
+            return ProcessorResult.BUSY;
+        } finally {
+            if (stalls != null) {
+                stalls.cycleFinished();
+            }
+            for (int i = 0; i < ringInputs.size(); i++) {
+                ringInputs.get(i).releaseConsumed();
+            }
+            if (metricsEnabled) {
+                long durationNanos = System.nanoTime() - startNanos;
+                metrics.recordCycle(result, durationNanos);
+                if (wakeReason != null) {
+                    traceBuffer.record(new CycleTrace(customThreadId, context.getCycleNumber(), wakeReason, inputIndex,
+                            scheduledWakeMillis, context.getCycleTimeMillis(), signalToCycleNanos, oldestInputWaitNanos,
+                            durationNanos, result));
+                }
+            }
+            if (cycleEvent != null) {
+                ProcessorEvents.commitCycle(cycleEvent, customThreadId, context.getCycleNumber(), result, queuedInputs);
+            }
+        }
+    }
+
+    private int queuedInputs() {
+        int queued = 0;
+        for (int i = 0; i < inputs.size(); i++) {
+            queued += inputs.get(i).size();
+        }
+        return queued;
+    }
+
+    /**
+     * Called by any thread, which has signalled the processor to run the cycle
+     *
+     * @param inputIndex index of the offered input, if the reason is INPUT
+     * @param deadlineMillis deadline of the expired wakeup, if the reason is TIMER
+     */
+    void onSignal(CycleTrace.WakeReason reason, int inputIndex, long deadlineMillis) {
+        if (metricsEnabled && signalNanos.get() == 0) {
+            if (traceBuffer != null) {
+                signalReason = reason;
+                signalInputIndex = inputIndex;
+                signalDeadlineMillis = deadlineMillis;
+            }
+            signalNanos.compareAndSet(0, System.nanoTime());
+        }
+    }
+
+    void handleException(Exception e) {
+        log.error("Processor error", e);
+        metrics.recordException();
+        ProcessorEvents.processorException(customThreadId, e);
+        processor.handleProcessorException(e);
+    }
+
+    void finish() {
+        try {
+            processor.end(context);
+        } catch (Exception e) {
+            log.error("There was an error stopping processor", e);
+        }
+
+        unsubscribeBroadcastInputs();
+        // Remove from scheduler, etc
+        processorScheduler.onFinish(customThreadId);
+        metricsRegistry.unregister(customThreadId);
+        stallWatchdog.untrack(customThreadId);
+        cycleTracer.untrack(customThreadId);
+        threadStatusChangeListener.onFinish(customThreadId);
+        log.info("The processor task {} has stopped", customThreadId);
+    }
+
+    void offer(int index, Object input) {
+        checkArg(index < inputs.size(), "Received input %d, but only registered %d", index, inputs.size());
+        InputReceiver<Object> receiver = inputs.get(index);
+        checkArg(!(receiver instanceof RingBufferReceiver), "Ring input accepts only claim/publish of its slots, use ProcessorThread.getRingPublisher instead of onInput");
+        receiver.offer(input);
+        ProcessorEvents.inputOffered(customThreadId, index);
+    }
+
+    @Override
+    public <T> Receiver<T> registerInput(int index) {
+        MpscQueueReceiver queueEndpoint = new MpscQueueReceiver<>(index, ProcessorMetrics.NOOP);
+        inputs.add(index, queueEndpoint);
+        return queueEndpoint;
+    }
+
+    @Override
+    public <T> BoundedReceiver<T> registerInput(int index, int capacity, BackpressurePolicy policy) {
+        BoundedQueueReceiver<T> queueEndpoint = new BoundedQueueReceiver<>(capacity, policy);
+        inputs.add(index, (InputReceiver) queueEndpoint);
+        return queueEndpoint;
+    }
+
+    @Override
+    public <T, K> ConflatingReceiver<T> registerConflatingInput(int index, Function<? super T, ? extends K> keyExtractor) {
+        ConflatingQueueReceiver<T, K> queueEndpoint = new ConflatingQueueReceiver<>(keyExtractor);
+        inputs.add(index, (InputReceiver) queueEndpoint);
+        return queueEndpoint;
+    }
+
+    @Override
+    public <E> Receiver<E> registerRingInput(int index, int capacity, Supplier<? extends E> slotFactory) {
+        RingBufferReceiver<E> queueEndpoint = new RingBufferReceiver<>(capacity, slotFactory);
+        inputs.add(index, (InputReceiver) queueEndpoint);
+        ringInputs.add(queueEndpoint);
+        return queueEndpoint;
+    }
+
+    @Override
+    public <T> Receiver<T> registerBroadcastInput(int index, BroadcastChannel<T> channel) {
+        checkArg(channel instanceof RingBroadcastChannel, "Unsupported broadcast channel %s", channel);
+        RingBroadcastChannel.Subscriber<T> queueEndpoint = ((RingBroadcastChannel<T>) channel).subscribe(customThreadId);
+        inputs.add(index, (InputReceiver) queueEndpoint);
+        broadcastInputs.add(queueEndpoint);
+        return queueEndpoint;
+    }
+
+    @SuppressWarnings("unchecked")
+    <E> RingPublisher<E> getRingPublisher(int index, ProcessorThread processorThread) {
+        checkArg(index < inputs.size(), "Requested input %d, but only registered %d", index, inputs.size());
+        InputReceiver<Object> input = inputs.get(index);
+        checkArg(input instanceof RingBufferReceiver, "Input %d is not a ring input", index);
+        return ((RingBufferReceiver<E>) input).publisher(processorThread);
+    }
+
+    /**
+     * Metrics, which also keep the queue wait of the oldest input consumed by the traced cycle
+     */
+    private class TracingMetrics implements ProcessorMetrics {
+
+        private final ProcessorMetrics delegate;
+
+        TracingMetrics(ProcessorMetrics delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void onInputRegistered(int index, Receiver<?> receiver) {
+            delegate.onInputRegistered(index, receiver);
+        }
+
+        @Override
+        public void onInputRegistered(int index, Receiver<?> receiver, boolean latencyRecorded) {
+            delegate.onInputRegistered(index, receiver, latencyRecorded);
+        }
+
+        @Override
+        public void recordCycle(ProcessorResult result, long durationNanos) {
+            delegate.recordCycle(result, durationNanos);
+        }
+
+        @Override
+        public void recordException() {
+            delegate.recordException();
+        }
+
+        @Override
+        public void recordWakeLatency(long latencyNanos) {
+            delegate.recordWakeLatency(latencyNanos);
+        }
+
+        @Override
+        public void recordInputLatency(int index, long latencyNanos) {
+            oldestInputWaitNanos = Math.max(oldestInputWaitNanos, latencyNanos);
+            delegate.recordInputLatency(index, latencyNanos);
+        }
+    }
+
+    long getCustomId() {
+        return customThreadId;
+    }
+
+    Object getProcessorState(Object... request) {
+        return processor.exposeProcessorState(request);
+    }
+}
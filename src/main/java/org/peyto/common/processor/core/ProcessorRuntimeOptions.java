@@ -0,0 +1,50 @@
+package org.peyto.common.processor.core;
+
+import org.peyto.common.processor.core.trace.CycleTracer;
+import org.peyto.common.processor.metrics.ProcessorMetricsRegistry;
+
+import java.util.Collections;
+
+/**
+ * Diagnostics of the processor runtime: metrics registry, stall watchdog and cycle tracer.
+ * {@link #DEFAULT} has no-op metrics, disabled watchdog and tracer, the other ones are derived with with* methods
+ */
+final class ProcessorRuntimeOptions {
+
+    static final ProcessorRuntimeOptions DEFAULT = new ProcessorRuntimeOptions(ProcessorMetricsRegistry.NOOP,
+            new StallWatchdog(0, 1, Collections.emptyList()), new CycleTracer(0, 2, "", 1));
+
+    private final ProcessorMetricsRegistry metricsRegistry;
+    private final StallWatchdog stallWatchdog;
+    private final CycleTracer cycleTracer;
+
+    private ProcessorRuntimeOptions(ProcessorMetricsRegistry metricsRegistry, StallWatchdog stallWatchdog, CycleTracer cycleTracer) {
+        this.metricsRegistry = metricsRegistry;
+        this.stallWatchdog = stallWatchdog;
+        this.cycleTracer = cycleTracer;
+    }
+
+    ProcessorRuntimeOptions withMetricsRegistry(ProcessorMetricsRegistry metricsRegistry) {
+        return new ProcessorRuntimeOptions(metricsRegistry, stallWatchdog, cycleTracer);
+    }
+
+    ProcessorRuntimeOptions withStallWatchdog(StallWatchdog stallWatchdog) {
+        return new ProcessorRuntimeOptions(metricsRegistry, stallWatchdog, cycleTracer);
+    }
+
+    ProcessorRuntimeOptions withCycleTracer(CycleTracer cycleTracer) {
+        return new ProcessorRuntimeOptions(metricsRegistry, stallWatchdog, cycleTracer);
+    }
+
+    ProcessorMetricsRegistry getMetricsRegistry() {
+        return metricsRegistry;
+    }
+
+    StallWatchdog getStallWatchdog() {
+        return stallWatchdog;
+    }
+
+    CycleTracer getCycleTracer() {
+        return cycleTracer;
+    }
+}
@@ -1,46 +1,65 @@
 package org.peyto.common.processor.core;
 
 import org.peyto.common.processor.ProcessorThreadFactory;
+import org.peyto.common.processor.IdleStrategy;
 import org.peyto.common.processor.ProcessorProvider;
 import org.peyto.common.processor.ProcessorThread;
 import org.peyto.common.processor.ProcessorThreadListener;
 import org.peyto.common.processor.ProcessorTimeProvider;
 import org.peyto.common.processor.core.schedule.ProcessorScheduler;
+import org.peyto.common.processor.core.trace.CycleTracer;
+import org.peyto.common.processor.metrics.ProcessorMetricsRegistry;
 import org.peyto.common.processor.simulation.ManualSimulationController;
 import org.peyto.common.processor.simulation.ReplayData;
 import org.peyto.common.processor.simulation.SimulationContext;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
 
 @Service
+@ConditionalOnProcessorProperty(name = "processor.thread.mode", havingValue = "dedicated", matchIfMissing = true)
 public class ProcessorThreadFactoryImpl implements ProcessorThreadFactory {
 
     private final ProcessorScheduler processorScheduler;
     private final ProcessorTimeProvider processorTimeProvider;
+    private final boolean dedupeWakeups;
+    private final ProcessorRuntimeOptions runtimeOptions;
 
     @SuppressWarnings("rawtypes")
     private final Map<Class, ThreadGroup> threadGroups = new ConcurrentHashMap<>();
 
     private final ThreadGroup simulationThreadGroup = new ThreadGroup("simulation-processor");
 
-    public ProcessorThreadFactoryImpl(ProcessorScheduler processorScheduler, ProcessorTimeProvider processorTimeProvider) {
+    public ProcessorThreadFactoryImpl(ProcessorScheduler processorScheduler, ProcessorTimeProvider processorTimeProvider,
+                                      @Value("${processor.scheduler.dedupe-wakeups:false}") boolean dedupeWakeups,
+                                      ProcessorMetricsRegistry metricsRegistry,
+                                      StallWatchdog stallWatchdog,
+                                      CycleTracer cycleTracer) {
         this.processorScheduler = processorScheduler;
         this.processorTimeProvider = processorTimeProvider;
+        this.dedupeWakeups = dedupeWakeups;
+        this.runtimeOptions = ProcessorRuntimeOptions.DEFAULT.withMetricsRegistry(metricsRegistry)
+                .withStallWatchdog(stallWatchdog)
+                .withCycleTracer(cycleTracer);
     }
 
     @Override
-    public <T> ProcessorThread createProcessorThread(ProcessorProvider<T> processorProvider, Long threadId, T configurationObject, ProcessorThreadListener threadStatusChangeListener, long processorEndTimeMillis) {
+    public <T> ProcessorThread createProcessorThread(ProcessorProvider<T> processorProvider, Long threadId, T configurationObject, ProcessorThreadListener threadStatusChangeListener, long processorEndTimeMillis, IdleStrategy idleStrategy) {
         return new ProcessorThreadImpl<>(
                 processorProvider,
-                threadGroups.computeIfAbsent(processorProvider.getClass(), pp -> new ThreadGroup(threadGroupName(pp))),
+                platformThreads(threadGroups.computeIfAbsent(processorProvider.getClass(), pp -> new ThreadGroup(threadGroupName(pp)))),
                 threadId,
                 configurationObject,
                 processorTimeProvider,
                 processorScheduler,
                 threadStatusChangeListener,
-                processorEndTimeMillis
+                processorEndTimeMillis,
+                idleStrategy,
+                dedupeWakeups,
+                runtimeOptions
         );
     }
 
@@ -49,13 +68,16 @@ public class ProcessorThreadFactoryImpl implements ProcessorThreadFactory {
         SimulationContext simulationContext = new SimulationContext(replayData.getCycleData());
         return new ProcessorThreadImpl<>(
                 processorProvider,
-                simulationThreadGroup,
+                platformThreads(simulationThreadGroup),
                 replayData.getThreadId(),
                 replayData.getConfigurationObject(),
                 simulationContext,
                 processorScheduler,
                 simulationContext,
-                simulationContext.processorEndTimeMillis()
+                simulationContext.processorEndTimeMillis(),
+                IdleStrategy.blocking(),
+                false,
+                ProcessorRuntimeOptions.DEFAULT
         );
     }
 
@@ -64,6 +86,10 @@ public class ProcessorThreadFactoryImpl implements ProcessorThreadFactory {
         throw new RuntimeException("Manual Simulation is not implemented at the moment");
     }
 
+    private static ThreadFactory platformThreads(ThreadGroup threadGroup) {
+        return runnable -> new Thread(threadGroup, runnable);
+    }
+
     @SuppressWarnings("rawtypes")
     private static String threadGroupName(Class pp) {
         return pp.getSimpleName().toLowerCase().replace("processorprovider", "");
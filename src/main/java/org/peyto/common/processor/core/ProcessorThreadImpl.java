@@ -2,18 +2,16 @@ package org.peyto.common.processor.core;
 
 import org.peyto.common.processor.*;
 import org.peyto.common.processor.core.schedule.ProcessorScheduler;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.peyto.common.processor.core.trace.CycleTrace;
 
-import java.util.ArrayList;
-import java.util.concurrent.atomic.AtomicBoolean;
-
-import static org.peyto.common.processor.utils.CheckerUtils.checkArg;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Generic Processor Thread, which is logic-agnostic, but have number of features:
  * The class is not public, the user should use ProcessorThreadFactory
- * 1. Each processor thread is runnable in a separate thread
+ * 1. Each processor thread is runnable in a separate thread (platform or virtual, created by the passed thread factory)
  * 2. Business logic should implement Processor interface, representing logic of a single cycle
  * 3. Each Processor cycle should have deterministic behaviour, based on the state, current cycle timestamp and inputs
  * 4. Processor thread can have inputs
@@ -21,21 +19,20 @@ import static org.peyto.common.processor.utils.CheckerUtils.checkArg;
  * 6. The processor thread can be wake up by either input or scheduled wakeup timestamp
  * @param <T> class of configuration object
  */
-class ProcessorThreadImpl<T> extends Thread implements ProcessorThread, ProcessorProviderBinder {
-
-    private static final Logger log = LoggerFactory.getLogger(ProcessorThreadImpl.class);
-    private final long customThreadId;
-    private final ProcessorScheduler processorScheduler;
-    private final ProcessorThreadListener threadStatusChangeListener;
+class ProcessorThreadImpl<T> implements ProcessorThread {
 
-    private final Processor processor;
-    private final InternalProcessorContext context;
+    private static final int RUNNING = 0;
+    // input or wakeup has arrived, since the processor has started the cycle
+    private static final int SIGNALLED = 1;
+    private static final int PARKED = 2;
 
+    private final Thread thread;
+    private final ProcessorRuntime<T> runtime;
+    private final IdleStrategy idleStrategy;
 
-    private final Object syncObj = new Object();
-    private final ArrayList<QueueReceiver<Object>> inputs = new ArrayList<>();
-
-    private final AtomicBoolean stoppingProcessor = new AtomicBoolean(false);
+    // park/unpark instead of monitor, so waiting virtual thread doesn't pin its carrier.
+    // Signals are coalesced: only the first signal after the processor has parked unparks it
+    private final AtomicInteger signalState = new AtomicInteger(RUNNING);
 
     /**
      *
@@ -45,102 +42,150 @@ class ProcessorThreadImpl<T> extends Thread implements ProcessorThread, Processo
      * @param processorScheduler
      * @param processorTimeProvider
      * @param processorEndTimeMillis
+     * @param idleStrategy how the thread waits for the signal, when the processor is IDLE
+     * @param dedupeWakeups keep only the earliest pending wakeup of the processor, see {@link ProcessorContextImpl}
+     * @param runtimeOptions metrics registry, stall watchdog and cycle tracer of the processor
      */
     public ProcessorThreadImpl(ProcessorProvider<T> processorProvider,
-                               ThreadGroup parentThreadGroup,
+                               ThreadFactory threadFactory,
                                Long threadId,
                                T configurationObject,
                                ProcessorTimeProvider processorTimeProvider,
                                ProcessorScheduler processorScheduler,
                                ProcessorThreadListener threadStatusChangeListener,
-                               long processorEndTimeMillis) {
-        super(parentThreadGroup, "processor-"+threadId);
-        this.customThreadId = threadId != null ? threadId : super.getId();
-        processorScheduler.registerThread(customThreadId, this);
-        this.processor = processorProvider.get(configurationObject, this);
-        this.context = new ProcessorContextImpl(customThreadId, processorScheduler, processorTimeProvider, processorEndTimeMillis);
-        this.threadStatusChangeListener = threadStatusChangeListener;
-        this.processorScheduler = processorScheduler;
+                               long processorEndTimeMillis,
+                               IdleStrategy idleStrategy,
+                               boolean dedupeWakeups,
+                               ProcessorRuntimeOptions runtimeOptions) {
+        this.thread = newThread(threadFactory, threadId);
+        this.idleStrategy = idleStrategy;
+        long customThreadId = threadId != null ? threadId : thread.getId();
+        this.runtime = new ProcessorRuntime<>(this, customThreadId, processorProvider, configurationObject,
+                new ProcessorContextImpl(customThreadId, processorScheduler, processorTimeProvider, processorEndTimeMillis, dedupeWakeups),
+                processorScheduler, threadStatusChangeListener, runtimeOptions);
+        runtime.attachBroadcastInputs();
     }
 
     public ProcessorThreadImpl(ProcessorProvider<T> processorProvider,
-                               ThreadGroup parentThreadGroup,
+                               ThreadFactory threadFactory,
                                Long threadId,
                                T configurationObject,
                                InternalProcessorContext processorContext,
                                ProcessorScheduler processorScheduler,
                                ProcessorThreadListener threadStatusChangeListener) {
-        super(parentThreadGroup, "processor-"+threadId);
-        this.customThreadId = threadId != null ? threadId : super.getId();
-        processorScheduler.registerThread(customThreadId, this);
-        this.processor = processorProvider.get(configurationObject, this);
-        this.context = processorContext;
-        this.threadStatusChangeListener = threadStatusChangeListener;
-        this.processorScheduler = processorScheduler;
+        this.thread = newThread(threadFactory, threadId);
+        this.idleStrategy = IdleStrategy.blocking();
+        long customThreadId = threadId != null ? threadId : thread.getId();
+        this.runtime = new ProcessorRuntime<>(this, customThreadId, processorProvider, configurationObject,
+                processorContext, processorScheduler, threadStatusChangeListener, ProcessorRuntimeOptions.DEFAULT);
+        runtime.attachBroadcastInputs();
+    }
+
+    @Override
+    public void start() {
+        thread.start();
     }
 
     @Override
     public void onInput(int index, Object input) {
-        checkArg(index < inputs.size(), "Received input %d, but only registered %d", index, inputs.size());
-        synchronized (syncObj) {
-            inputs.get(index).offer(input);
-            syncObj.notify();
-        }
+        runtime.offer(index, input);
+        signal(CycleTrace.WakeReason.INPUT, index, CycleTrace.UNKNOWN);
     }
 
     @Override
     public void wakeProcessor() {
-        synchronized (syncObj) {
-            syncObj.notify();
+        signal(CycleTrace.WakeReason.SIGNAL, (int) CycleTrace.UNKNOWN, CycleTrace.UNKNOWN);
+    }
+
+    @Override
+    public void onScheduledWakeup(long deadlineMillis) {
+        signal(CycleTrace.WakeReason.TIMER, (int) CycleTrace.UNKNOWN, deadlineMillis);
+    }
+
+    private void signal(CycleTrace.WakeReason reason, int inputIndex, long deadlineMillis) {
+        while (true) {
+            int state = signalState.get();
+            if (state == SIGNALLED) {
+                return;
+            }
+            // stamped before the signal is visible, so the cycle handling it sees the stamp
+            runtime.onSignal(reason, inputIndex, deadlineMillis);
+            if (signalState.compareAndSet(state, SIGNALLED)) {
+                if (state == PARKED) {
+                    LockSupport.unpark(thread);
+                }
+                return;
+            }
         }
     }
 
     @Override
     public void run() {
-        processor.init(context);
-        while (context.calculateNextCycleTime() <= context.processorEndTimeMillis() && !stoppingProcessor.get()) {
-            try {
-                context.calculateNextCycleNumber();
-                ProcessorResult result = processor.process(context);
-                if (result == ProcessorResult.END) {
-                    log.info("Processor task {} is finishing", customThreadId);
-                    stoppingProcessor.set(true);
-                } else if (result == ProcessorResult.IDLE) {
-                    synchronized (syncObj) {
-                        syncObj.wait();
-                    }
-                }
-            } catch (Exception e) {
-                log.error("Processor error", e);
-                processor.handleProcessorException(e);
+        runtime.init();
+        while (runtime.isRunning()) {
+            // signals received so far are for the inputs, which this cycle will see
+            if (signalState.get() == SIGNALLED) {
+                signalState.set(RUNNING);
+            }
+            ProcessorResult result = runtime.runCycle();
+            if (result == ProcessorResult.IDLE) {
+                idle();
+            }
+        }
+        runtime.finish();
+    }
+
+    /**
+     * Idle until the signal, according to idle strategy. If the signal has arrived during the cycle, processor doesn't
+     * idle at all, so the input offered after the processor has checked its queues is never left behind.
+     * While the thread spins, the state stays RUNNING, so the signal is just a CAS without unpark
+     */
+    private void idle() {
+        for (int idleCount = 0; signalState.get() == RUNNING; ) {
+            long parkNanos = idleStrategy.idle(idleCount);
+            if (parkNanos != 0 && signalState.compareAndSet(RUNNING, PARKED)) {
+                park(parkNanos);
+                signalState.compareAndSet(PARKED, RUNNING);
+            }
+            // saturated, a long spinning idle must not overflow back to the spinning phase of the strategy
+            if (idleCount < Integer.MAX_VALUE) {
+                idleCount++;
             }
         }
-        try {
-            processor.end(context);
-        } catch (Exception e) {
-            log.error("There was an error stopping processor", e);
+    }
+
+    private void park(long parkNanos) {
+        if (parkNanos > 0) {
+            LockSupport.parkNanos(this, parkNanos);
+        } else {
+            while (signalState.get() == PARKED) {
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    runtime.handleException(new InterruptedException("Processor thread " + runtime.getCustomId() + " was interrupted"));
+                    return;
+                }
+            }
         }
+    }
 
-        // Remove from scheduler, etc
-        processorScheduler.onFinish(customThreadId);
-        threadStatusChangeListener.onFinish(customThreadId);
-        log.info("The processor task {} has stopped", customThreadId);
+    private Thread newThread(ThreadFactory threadFactory, Long threadId) {
+        Thread newThread = threadFactory.newThread(this);
+        newThread.setName("processor-" + threadId);
+        return newThread;
     }
 
     @Override
-    public <T> Receiver<T> registerInput(int index) {
-        QueueReceiver queueEndpoint = new QueueReceiver<>();
-        inputs.add(index, queueEndpoint);
-        return queueEndpoint;
+    public <E> RingPublisher<E> getRingPublisher(int index) {
+        return runtime.getRingPublisher(index, this);
     }
 
     @Override
     public long getCustomId() {
-        return customThreadId;
+        return runtime.getCustomId();
     }
 
     @Override
     public Object getProcessorState(Object... request) {
-        return processor.exposeProcessorState(request);
+        return runtime.getProcessorState(request);
     }
-}
\ No newline at end of file
+}
@@ -1,13 +1,17 @@
 package org.peyto.common.processor.core;
 
-import org.peyto.common.processor.Receiver;
-
 import java.util.ArrayDeque;
-import java.util.Queue;
+import java.util.Iterator;
+import java.util.function.Consumer;
 
-public class QueueReceiver<T> implements Receiver<T> {
+/**
+ * Simple synchronized queue. Inputs use lock-free {@link MpscQueueReceiver} by default
+ */
+public class QueueReceiver<T> implements InputReceiver<T> {
 
-    private final Queue<T> underlyingQueue = new ArrayDeque<>();
+    private final ArrayDeque<T> underlyingQueue = new ArrayDeque<>();
+    // Used by the processor only, so the consumer is called outside of the lock without allocations
+    private final ArrayDeque<T> drainBuffer = new ArrayDeque<>();
 
     @Override
     public synchronized T receive() {
@@ -19,11 +23,47 @@ public class QueueReceiver<T> implements Receiver<T> {
         return underlyingQueue.size() > 0;
     }
 
+    @Override
+    public synchronized int size() {
+        return underlyingQueue.size();
+    }
+
+    @Override
+    public int drainTo(Consumer<? super T> consumer, int maxElements) {
+        synchronized (this) {
+            T obj;
+            while (drainBuffer.size() < maxElements && (obj = underlyingQueue.poll()) != null) {
+                drainBuffer.offer(obj);
+            }
+        }
+        int drained = 0;
+        try {
+            T obj;
+            while ((obj = drainBuffer.poll()) != null) {
+                consumer.accept(obj);
+                drained++;
+            }
+        } finally {
+            if (!drainBuffer.isEmpty()) {
+                // consumer has failed, return not consumed objects to the head of the queue
+                synchronized (this) {
+                    Iterator<T> notConsumed = drainBuffer.descendingIterator();
+                    while (notConsumed.hasNext()) {
+                        underlyingQueue.offerFirst(notConsumed.next());
+                    }
+                }
+                drainBuffer.clear();
+            }
+        }
+        return drained;
+    }
+
     @Override
     public synchronized void clear() {
         underlyingQueue.clear();
     }
 
+    @Override
     public synchronized void offer(T obj) {
         underlyingQueue.offer(obj);
     }
@@ -0,0 +1,242 @@
+package org.peyto.common.processor.core;
+
+import org.peyto.common.processor.BroadcastChannel;
+import org.peyto.common.processor.ProcessorThread;
+import org.peyto.common.processor.SlowSubscriberPolicy;
+
+import java.util.Collection;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.peyto.common.processor.utils.CheckerUtils.checkArg;
+import static org.peyto.common.processor.utils.CheckerUtils.checkNotNull;
+
+/**
+ * Broadcast channel backed by a ring of capacity elements. Publishers are serialized by the channel monitor,
+ * every subscriber reads with its own cursor. The elements are not cleared after reading (there is no single
+ * reader), so the ring keeps references to up to capacity last elements.
+ * <p>
+ * With BLOCK_PUBLISHER the publisher waits for the slowest subscriber, holding the monitor, so the other publishers
+ * wait as well. A processor subscribes, when it's built, not when it's started, so an unstarted processor gates
+ * the channel just like a stalled one. Subscribing and unsubscribing don't take the monitor, so the waiting publisher
+ * doesn't block building new processors.
+ */
+public class RingBroadcastChannel<T> implements BroadcastChannel<T> {
+
+    private static final long FULL_PARK_NANOS = 1_000;
+
+    // slots are read with volatile semantics, so the lapping check after the read can't be reordered before it
+    private final AtomicReferenceArray<T> ring;
+    private final int mask;
+    private final SlowSubscriberPolicy policy;
+
+    private final CopyOnWriteArrayList<Subscriber<T>> subscribers = new CopyOnWriteArrayList<>();
+
+    // the next sequence to publish, all the sequences below are readable
+    private final AtomicLong publishSequence = new AtomicLong();
+    // guarded by this, cached cursor of the slowest subscriber, so publisher doesn't scan all of them every time
+    private long gatingSequence = 0;
+
+    public RingBroadcastChannel(int capacity, SlowSubscriberPolicy policy) {
+        checkArg(capacity > 0 && Integer.bitCount(capacity) == 1, "Channel capacity should be power of 2, but was %d", capacity);
+        this.ring = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.policy = checkNotNull(policy, "policy");
+    }
+
+    @Override
+    public void publish(T element) {
+        synchronized (this) {
+            write(element);
+        }
+        wakeSubscribers();
+    }
+
+    @Override
+    public void publishAll(Collection<? extends T> elements) {
+        if (elements.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            for (T element : elements) {
+                write(element);
+            }
+        }
+        wakeSubscribers();
+    }
+
+    @Override
+    public int getSubscribersCount() {
+        return subscribers.size();
+    }
+
+    @Override
+    public long getLag(long threadId) {
+        Subscriber<T> subscriber = findSubscriber(threadId);
+        return subscriber == null ? -1 : subscriber.getLag();
+    }
+
+    @Override
+    public long getMaxLag() {
+        long maxLag = 0;
+        for (Subscriber<T> subscriber : subscribers) {
+            maxLag = Math.max(maxLag, subscriber.getLag());
+        }
+        return maxLag;
+    }
+
+    @Override
+    public long getSkippedCount(long threadId) {
+        Subscriber<T> subscriber = findSubscriber(threadId);
+        return subscriber == null ? -1 : subscriber.skippedCount;
+    }
+
+    /**
+     * Subscriber starts reading from the next published element. It gates the publisher right away, but it's woken
+     * only after {@link Subscriber#attach}, so the processor thread, which is still being built, is never signalled
+     */
+    Subscriber<T> subscribe(long threadId) {
+        Subscriber<T> subscriber = new Subscriber<>(this, threadId, publishSequence.get());
+        subscribers.add(subscriber);
+        // a publisher, which has scanned the subscribers before this one was added, gates on the cursors not above
+        // the sequence it was writing, so it never laps the cursor read after adding
+        subscriber.cursor.set(publishSequence.get());
+        return subscriber;
+    }
+
+    void unsubscribe(Subscriber<T> subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    private void write(T element) {
+        long sequence = publishSequence.get();
+        if (policy == SlowSubscriberPolicy.BLOCK_PUBLISHER) {
+            while (sequence - gatingSequence >= ring.length()) {
+                gatingSequence = minSubscriberCursor(sequence);
+                if (sequence - gatingSequence >= ring.length()) {
+                    // idle subscribers may not know about the elements written so far (e.g. the head of publishAll
+                    // batch), they advance only when woken. Signals are coalesced, so repeated wakes are cheap
+                    wakeSubscribers();
+                    LockSupport.parkNanos(FULL_PARK_NANOS);
+                }
+            }
+        }
+        ring.lazySet((int) sequence & mask, element);
+        publishSequence.set(sequence + 1);
+    }
+
+    private long minSubscriberCursor(long sequence) {
+        long min = sequence;
+        for (Subscriber<T> subscriber : subscribers) {
+            min = Math.min(min, subscriber.cursor.get());
+        }
+        return min;
+    }
+
+    private void wakeSubscribers() {
+        for (Subscriber<T> subscriber : subscribers) {
+            ProcessorThread processorThread = subscriber.processorThread;
+            // not attached yet, the processor will see the elements in its first cycle
+            if (processorThread != null) {
+                processorThread.wakeProcessor();
+            }
+        }
+    }
+
+    private Subscriber<T> findSubscriber(long threadId) {
+        for (Subscriber<T> subscriber : subscribers) {
+            if (subscriber.threadId == threadId) {
+                return subscriber;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Input of the single processor, reading the channel with its own cursor
+     */
+    static final class Subscriber<T> implements InputReceiver<T> {
+
+        private final RingBroadcastChannel<T> channel;
+        private final long threadId;
+        // null until attached
+        private volatile ProcessorThread processorThread;
+        // the next sequence to read, written by the processor only
+        private final AtomicLong cursor;
+        private volatile long skippedCount = 0;
+
+        private Subscriber(RingBroadcastChannel<T> channel, long threadId, long cursor) {
+            this.channel = channel;
+            this.threadId = threadId;
+            this.cursor = new AtomicLong(cursor);
+        }
+
+        @Override
+        public void offer(T obj) {
+            throw new UnsupportedOperationException("Broadcast input accepts elements only from the channel");
+        }
+
+        @Override
+        public T receive() {
+            long sequence = cursor.get();
+            while (true) {
+                long published = channel.publishSequence.get();
+                if (sequence >= published) {
+                    return null;
+                }
+                if (channel.policy == SlowSubscriberPolicy.SKIP_OLDEST && published - sequence >= channel.ring.length()) {
+                    // the oldest slot might be overwritten by the publisher right now, so it's skipped as well
+                    sequence = skipTo(sequence, published - channel.ring.length() + 1);
+                }
+                T element = channel.ring.get((int) sequence & channel.mask);
+                // the slot might have been overwritten while reading, if the publisher has lapped the cursor.
+                // The overwriting element is written after publishSequence has reached sequence + capacity, and
+                // the volatile slot read is ordered before the re-check, so the re-check sees the overwrite
+                if (channel.policy == SlowSubscriberPolicy.BLOCK_PUBLISHER
+                        || channel.publishSequence.get() - sequence < channel.ring.length()) {
+                    cursor.lazySet(sequence + 1);
+                    return element;
+                }
+                sequence = skipTo(sequence, sequence + 1);
+            }
+        }
+
+        @Override
+        public boolean hasData() {
+            return cursor.get() < channel.publishSequence.get();
+        }
+
+        @Override
+        public int size() {
+            return (int) Math.min(getLag(), channel.ring.length());
+        }
+
+        @Override
+        public void clear() {
+            cursor.lazySet(channel.publishSequence.get());
+        }
+
+        long getLag() {
+            return Math.max(0, channel.publishSequence.get() - cursor.get());
+        }
+
+        /**
+         * Publishers wake the processor thread from now on
+         */
+        void attach(ProcessorThread processorThread) {
+            this.processorThread = processorThread;
+        }
+
+        void unsubscribe() {
+            channel.unsubscribe(this);
+        }
+
+        private long skipTo(long sequence, long nextSequence) {
+            skippedCount += nextSequence - sequence;
+            cursor.lazySet(nextSequence);
+            return nextSequence;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package org.peyto.common.processor.core;
+
+import org.peyto.common.processor.ProcessorThread;
+import org.peyto.common.processor.RingPublisher;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static org.peyto.common.processor.utils.CheckerUtils.checkArg;
+
+/**
+ * Multi producer ring of pre-allocated slots with claim/publish protocol. Producers claim the sequence with CAS,
+ * fill the slot and mark it available with the round number of the sequence, so the slots can be published
+ * out of order. The processor reads the slots in order, in place, and releases them when it's done: on the next
+ * receive(), after drainTo() or at the end of the cycle ({@link #releaseConsumed()}).
+ */
+public class RingBufferReceiver<E> implements InputReceiver<E> {
+
+    private static final int SPINS_BEFORE_PARK = 100;
+    private static final long FULL_PARK_NANOS = 1_000;
+
+    private final Object[] slots;
+    private final int mask;
+    private final int roundShift;
+    // round number of the last published sequence per slot
+    private final AtomicIntegerArray availableRounds;
+
+    // the next sequence to claim
+    private final AtomicLong claimSequence = new AtomicLong();
+    // all the sequences below are released by the processor
+    private final AtomicLong releasedSequence = new AtomicLong();
+
+    // used by the processor only
+    private long nextSequence = 0;
+
+    public RingBufferReceiver(int capacity, Supplier<? extends E> slotFactory) {
+        checkArg(capacity > 0 && Integer.bitCount(capacity) == 1, "Ring capacity should be power of 2, but was %d", capacity);
+        this.slots = new Object[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = slotFactory.get();
+        }
+        this.mask = capacity - 1;
+        this.roundShift = Integer.numberOfTrailingZeros(capacity);
+        this.availableRounds = new AtomicIntegerArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            availableRounds.set(i, -1);
+        }
+    }
+
+    /**
+     * Publisher, which wakes the processor thread on publish
+     */
+    RingPublisher<E> publisher(ProcessorThread processorThread) {
+        return new RingPublisher<E>() {
+            @Override
+            public long claim() {
+                return RingBufferReceiver.this.claim();
+            }
+
+            @Override
+            public long tryClaim() {
+                return RingBufferReceiver.this.tryClaim();
+            }
+
+            @Override
+            public E slot(long sequence) {
+                return RingBufferReceiver.this.slot(sequence);
+            }
+
+            @Override
+            public void publish(long sequence) {
+                RingBufferReceiver.this.publish(sequence);
+                processorThread.wakeProcessor();
+            }
+        };
+    }
+
+    long claim() {
+        int spins = 0;
+        long sequence;
+        while ((sequence = tryClaim()) < 0) {
+            if (++spins < SPINS_BEFORE_PARK) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(FULL_PARK_NANOS);
+            }
+        }
+        return sequence;
+    }
+
+    long tryClaim() {
+        while (true) {
+            long sequence = claimSequence.get();
+            if (sequence - releasedSequence.get() >= slots.length) {
+                return -1;
+            }
+            if (claimSequence.compareAndSet(sequence, sequence + 1)) {
+                return sequence;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    E slot(long sequence) {
+        return (E) slots[(int) sequence & mask];
+    }
+
+    void publish(long sequence) {
+        availableRounds.lazySet((int) sequence & mask, (int) (sequence >>> roundShift));
+    }
+
+    /**
+     * Ring inputs accept only claim/publish
+     */
+    @Override
+    public void offer(E obj) {
+        throw new UnsupportedOperationException("Ring input accepts only claim/publish, use ProcessorThread.getRingPublisher");
+    }
+
+    @Override
+    public E receive() {
+        releaseConsumed();
+        if (!isAvailable(nextSequence)) {
+            return null;
+        }
+        return slot(nextSequence++);
+    }
+
+    @Override
+    public int drainTo(Consumer<? super E> consumer, int maxElements) {
+        releaseConsumed();
+        int drained = 0;
+        try {
+            while (drained < maxElements && isAvailable(nextSequence)) {
+                E slot = slot(nextSequence);
+                nextSequence++;
+                consumer.accept(slot);
+                drained++;
+            }
+        } finally {
+            releaseConsumed();
+        }
+        return drained;
+    }
+
+    @Override
+    public boolean hasData() {
+        return isAvailable(nextSequence);
+    }
+
+    /**
+     * @return claimed, but not received slots (including the ones not published yet)
+     */
+    @Override
+    public int size() {
+        return (int) Math.max(0, claimSequence.get() - nextSequence);
+    }
+
+    @Override
+    public void clear() {
+        while (isAvailable(nextSequence)) {
+            nextSequence++;
+        }
+        releaseConsumed();
+    }
+
+    /**
+     * Return received slots to producers. Called by the processor runtime at the end of each cycle
+     */
+    void releaseConsumed() {
+        if (releasedSequence.get() != nextSequence) {
+            releasedSequence.lazySet(nextSequence);
+        }
+    }
+
+    private boolean isAvailable(long sequence) {
+        return availableRounds.get((int) sequence & mask) == (int) (sequence >>> roundShift);
+    }
+}
@@ -0,0 +1,272 @@
+package org.peyto.common.processor.core;
+
+import org.peyto.common.processor.metrics.ProcessorStallListener;
+import org.peyto.common.processor.utils.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+import static org.peyto.common.processor.utils.CheckerUtils.checkArg;
+
+/**
+ * Watchdog of processor cycles, which run longer than the budget (processor.watchdog.budget-millis, 0 disables it),
+ * e.g. because the processor blocks on I/O or lock inside process().
+ * <p>
+ * The processor publishes the start of each cycle with a volatile write. The watchdog thread checks the running
+ * cycles twice per budget and samples the stack of the stalled thread, at most once per
+ * processor.watchdog.sample-interval-millis per processor. Stalls are counted by the processor itself, when
+ * the stalled cycle finishes.
+ */
+@Service
+public class StallWatchdog implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(StallWatchdog.class);
+
+    private static final int MAX_SAMPLES = 8;
+
+    private final long budgetNanos;
+    private final long sampleIntervalNanos;
+    private final List<ProcessorStallListener> listeners;
+    private final Thread watchdogThread;
+
+    private final Map<Long, ProcessorStalls> processors = new ConcurrentHashMap<>();
+
+    private volatile boolean running = true;
+
+    @Autowired
+    public StallWatchdog(@Value("${processor.watchdog.budget-millis:0}") long budgetMillis,
+                         @Value("${processor.watchdog.sample-interval-millis:1000}") long sampleIntervalMillis,
+                         ObjectProvider<ProcessorStallListener> listeners) {
+        this(budgetMillis, sampleIntervalMillis, listeners.orderedStream().collect(Collectors.toList()));
+    }
+
+    public StallWatchdog(long budgetMillis, long sampleIntervalMillis, List<ProcessorStallListener> listeners) {
+        checkArg(budgetMillis >= 0, "Watchdog budget shouldn't be negative, but was %d", budgetMillis);
+        checkArg(sampleIntervalMillis > 0, "Watchdog sample interval should be positive, but was %d", sampleIntervalMillis);
+        this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+        this.sampleIntervalNanos = TimeUnit.MILLISECONDS.toNanos(sampleIntervalMillis);
+        this.listeners = listeners;
+        if (budgetMillis > 0) {
+            this.watchdogThread = new Thread(this::watch, "processor-watchdog");
+            watchdogThread.setDaemon(true);
+            watchdogThread.start();
+        } else {
+            this.watchdogThread = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return watchdogThread != null;
+    }
+
+    /**
+     * @return stalls of the processor, which the processor reports its cycles to, or null if watchdog is disabled
+     */
+    ProcessorStalls track(long threadId, String processorName) {
+        if (!isEnabled()) {
+            return null;
+        }
+        ProcessorStalls stalls = new ProcessorStalls(threadId, processorName, budgetNanos);
+        processors.put(threadId, stalls);
+        return stalls;
+    }
+
+    void untrack(long threadId) {
+        processors.remove(threadId);
+    }
+
+    /**
+     * @return stalls of the running processor, or null if it isn't tracked
+     */
+    public ProcessorStalls getStalls(long threadId) {
+        return processors.get(threadId);
+    }
+
+    public Collection<ProcessorStalls> getAllStalls() {
+        return new ArrayList<>(processors.values());
+    }
+
+    @Override
+    public void destroy() {
+        running = false;
+        if (watchdogThread != null) {
+            LockSupport.unpark(watchdogThread);
+        }
+    }
+
+    private void watch() {
+        long checkNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(1), budgetNanos / 2);
+        while (running) {
+            long now = System.nanoTime();
+            for (ProcessorStalls stalls : processors.values()) {
+                check(stalls, now);
+            }
+            LockSupport.parkNanos(this, checkNanos);
+        }
+    }
+
+    private void check(ProcessorStalls stalls, long now) {
+        long cycleStart = stalls.cycleStartNanos;
+        if (cycleStart == 0 || now - cycleStart <= budgetNanos || now - stalls.lastSampleNanos < sampleIntervalNanos) {
+            return;
+        }
+        Thread thread = stalls.cycleThread;
+        StackTraceElement[] stackTrace = thread.getStackTrace();
+        // the cycle might have finished while the stack was taken
+        if (stalls.cycleStartNanos != cycleStart) {
+            return;
+        }
+        stalls.lastSampleNanos = now;
+        long stalledMillis = TimeUnit.NANOSECONDS.toMillis(now - cycleStart);
+        stalls.addSample(new StallSample(System.currentTimeMillis(), stalledMillis, thread.getName(), stackTrace));
+        log.warn("Processor {} cycle is running for {} ms on thread {}", stalls.threadId, stalledMillis, thread.getName());
+        for (ProcessorStallListener listener : listeners) {
+            try {
+                listener.onStall(stalls.threadId, stalls.processorName, stalledMillis, stackTrace);
+            } catch (Exception e) {
+                log.error("Stall listener has failed", e);
+            }
+        }
+    }
+
+    /**
+     * Stalls of a single processor. Cycles are reported by the thread running the processor
+     */
+    public static class ProcessorStalls {
+
+        private final long threadId;
+        private final String processorName;
+        private final long budgetNanos;
+
+        private final AtomicLong stallsCount = new AtomicLong();
+        private final LatencyHistogram stallMillis = new LatencyHistogram();
+        // guarded by itself
+        private final ArrayDeque<StallSample> samples = new ArrayDeque<>();
+
+        // thread is written before the start, so the watchdog, which has seen the start, sees the thread of the cycle
+        private volatile Thread cycleThread;
+        private volatile long cycleStartNanos;
+        // watchdog thread only
+        private long lastSampleNanos;
+
+        ProcessorStalls(long threadId, String processorName, long budgetNanos) {
+            this.threadId = threadId;
+            this.processorName = processorName;
+            this.budgetNanos = budgetNanos;
+            this.lastSampleNanos = System.nanoTime() - Long.MAX_VALUE / 2;
+        }
+
+        void cycleStarted() {
+            cycleThread = Thread.currentThread();
+            cycleStartNanos = System.nanoTime();
+        }
+
+        void cycleFinished() {
+            long durationNanos = System.nanoTime() - cycleStartNanos;
+            cycleStartNanos = 0;
+            if (durationNanos > budgetNanos) {
+                stallsCount.incrementAndGet();
+                stallMillis.record(TimeUnit.NANOSECONDS.toMillis(durationNanos));
+            }
+        }
+
+        private void addSample(StallSample sample) {
+            synchronized (samples) {
+                if (samples.size() == MAX_SAMPLES) {
+                    samples.removeFirst();
+                }
+                samples.addLast(sample);
+            }
+        }
+
+        public long getThreadId() {
+            return threadId;
+        }
+
+        public String getProcessorName() {
+            return processorName;
+        }
+
+        /**
+         * @return number of finished cycles, which ran longer than the budget
+         */
+        public long getStallsCount() {
+            return stallsCount.get();
+        }
+
+        /**
+         * @return durations of finished cycles, which ran longer than the budget
+         */
+        public LatencyHistogram getStallMillis() {
+            return stallMillis;
+        }
+
+        /**
+         * @return how long the current cycle has been running, 0 if the processor is not in the cycle
+         */
+        public long getCurrentCycleMillis() {
+            long cycleStart = cycleStartNanos;
+            return cycleStart != 0 ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - cycleStart) : 0;
+        }
+
+        /**
+         * @return up to the last 8 stack samples, the oldest first
+         */
+        public List<StallSample> getSamples() {
+            synchronized (samples) {
+                return new ArrayList<>(samples);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return processorName + "-" + threadId + " {stalls=" + getStallsCount() + ", stallMillis=" + stallMillis + "}";
+        }
+    }
+
+    public static final class StallSample {
+
+        private final long timeMillis;
+        private final long stalledMillis;
+        private final String threadName;
+        private final StackTraceElement[] stackTrace;
+
+        StallSample(long timeMillis, long stalledMillis, String threadName, StackTraceElement[] stackTrace) {
+            this.timeMillis = timeMillis;
+            this.stalledMillis = stalledMillis;
+            this.threadName = threadName;
+            this.stackTrace = stackTrace;
+        }
+
+        public long getTimeMillis() {
+            return timeMillis;
+        }
+
+        public long getStalledMillis() {
+            return stalledMillis;
+        }
+
+        public String getThreadName() {
+            return threadName;
+        }
+
+        public StackTraceElement[] getStackTrace() {
+            return stackTrace.clone();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.peyto.common.processor.core;
+
+import org.peyto.common.processor.IdleStrategy;
+import org.peyto.common.processor.ProcessorProvider;
+import org.peyto.common.processor.ProcessorThread;
+import org.peyto.common.processor.ProcessorThreadFactory;
+import org.peyto.common.processor.ProcessorThreadListener;
+import org.peyto.common.processor.ProcessorTimeProvider;
+import org.peyto.common.processor.core.schedule.ProcessorScheduler;
+import org.peyto.common.processor.core.trace.CycleTracer;
+import org.peyto.common.processor.metrics.ProcessorMetricsRegistry;
+import org.peyto.common.processor.simulation.ManualSimulationController;
+import org.peyto.common.processor.simulation.ReplayData;
+import org.peyto.common.processor.simulation.SimulationContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Factory of processors, each running on its own virtual thread (processor.thread.mode=virtual, JDK 21+).
+ * Keeps the blocking model of dedicated threads, but the processor costs only few KB of heap instead of the OS
+ * thread with its stack.
+ */
+@Service
+@ConditionalOnProcessorProperty(name = "processor.thread.mode", havingValue = "virtual")
+public class VirtualProcessorThreadFactory implements ProcessorThreadFactory {
+
+    private final ProcessorScheduler processorScheduler;
+    private final ProcessorTimeProvider processorTimeProvider;
+    private final boolean dedupeWakeups;
+    private final ProcessorRuntimeOptions runtimeOptions;
+    private final ThreadFactory virtualThreads;
+
+    public VirtualProcessorThreadFactory(ProcessorScheduler processorScheduler, ProcessorTimeProvider processorTimeProvider,
+                                         @Value("${processor.scheduler.dedupe-wakeups:false}") boolean dedupeWakeups,
+                                         ProcessorMetricsRegistry metricsRegistry,
+                                         StallWatchdog stallWatchdog,
+                                         CycleTracer cycleTracer) {
+        if (!VirtualThreads.isSupported()) {
+            // the configuration is valid, it's the runtime, which can't run it
+            throw new IllegalStateException("processor.thread.mode=virtual requires JDK 21+ and the jar built with java21 profile, but running on "
+                    + System.getProperty("java.version"));
+        }
+        this.processorScheduler = processorScheduler;
+        this.processorTimeProvider = processorTimeProvider;
+        this.dedupeWakeups = dedupeWakeups;
+        this.runtimeOptions = ProcessorRuntimeOptions.DEFAULT.withMetricsRegistry(metricsRegistry)
+                .withStallWatchdog(stallWatchdog)
+                .withCycleTracer(cycleTracer);
+        this.virtualThreads = VirtualThreads.factory();
+    }
+
+    @Override
+    public <T> ProcessorThread createProcessorThread(ProcessorProvider<T> processorProvider, Long threadId, T configurationObject, ProcessorThreadListener threadStatusChangeListener, long processorEndTimeMillis, IdleStrategy idleStrategy) {
+        return new ProcessorThreadImpl<>(
+                processorProvider,
+                virtualThreads,
+                threadId,
+                configurationObject,
+                processorTimeProvider,
+                processorScheduler,
+                threadStatusChangeListener,
+                processorEndTimeMillis,
+                idleStrategy,
+                dedupeWakeups,
+                runtimeOptions
+        );
+    }
+
+    @Override
+    public <T> ProcessorThread createSimulationReplay(ProcessorProvider<T> processorProvider, long threadId, T configurationObject, ProcessorThreadListener threadStatusChangeListener, ReplayData<T> replayData) {
+        SimulationContext simulationContext = new SimulationContext(replayData.getCycleData());
+        return new ProcessorThreadImpl<>(
+                processorProvider,
+                virtualThreads,
+                replayData.getThreadId(),
+                replayData.getConfigurationObject(),
+                simulationContext,
+                processorScheduler,
+                simulationContext
+        );
+    }
+
+    @Override
+    public <T> ProcessorThread createSimulationManual(ProcessorProvider<T> processorProvider, long threadId, T configurationObject, ProcessorThreadListener threadStatusChangeListener, ManualSimulationController manualSimulationController) {
+        throw new RuntimeException("Manual Simulation is not implemented at the moment");
+    }
+}
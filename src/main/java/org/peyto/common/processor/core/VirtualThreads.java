@@ -0,0 +1,25 @@
+package org.peyto.common.processor.core;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to virtual threads. The project is compiled for Java 8, so this version reports that virtual threads are
+ * not supported. On JDK 21+ it's replaced by the version from META-INF/versions/21 of the multi-release jar
+ * (src/main/java21, built by java21 maven profile)
+ */
+final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    static boolean isSupported() {
+        return false;
+    }
+
+    /**
+     * @return factory of virtual threads, null if they are not supported, see {@link #isSupported()}
+     */
+    static ThreadFactory factory() {
+        return null;
+    }
+}
@@ -0,0 +1,57 @@
+package org.peyto.common.processor.core.jfr;
+
+import org.peyto.common.processor.ProcessorResult;
+
+/**
+ * JDK Flight Recorder events of the framework hot points, so processor cycles can be correlated with GC pauses,
+ * safepoints and lock inflation on the same timeline.
+ * <p>
+ * The project is compiled for Java 8, so this version is a no-op, which is inlined away by JIT. On JDK 11+ it's
+ * replaced by the version from META-INF/versions/11 of the multi-release jar (src/main/java11, built by java11
+ * maven profile). The events are disabled by default, enable them in the JFR settings, e.g.
+ * {@code org.peyto.processor.Cycle#enabled=true}
+ */
+public final class ProcessorEvents {
+
+    private ProcessorEvents() {
+    }
+
+    /**
+     * @return the started cycle event, or null if the event is disabled
+     */
+    public static Object beginCycle() {
+        return null;
+    }
+
+    /**
+     * @param cycleEvent the event returned by {@link #beginCycle()}, not null
+     * @param queuedInputs number of input objects queued, when the cycle began
+     */
+    public static void commitCycle(Object cycleEvent, long threadId, long cycleNumber, ProcessorResult result, int queuedInputs) {
+    }
+
+    public static void inputOffered(long threadId, int index) {
+    }
+
+    public static void processorException(long threadId, Exception exception) {
+    }
+
+    public static void wakeupScheduled(long threadId, long timeMillis, long timerId) {
+    }
+
+    public static void schedulerTick(long currentMillis, long nextWakeupMillis) {
+    }
+
+    /**
+     * @return the started fan-out event, or null if the event is disabled
+     */
+    public static Object beginNotify() {
+        return null;
+    }
+
+    /**
+     * @param notifyEvent the event returned by {@link #beginNotify()}, not null
+     */
+    public static void commitNotify(Object notifyEvent, long currentMillis, int threadsCount) {
+    }
+}
@@ -2,6 +2,7 @@ package org.peyto.common.processor.core.schedule;
 
 import org.peyto.common.processor.ProcessorTimeProvider;
 import org.peyto.common.processor.core.ThreadSleeper;
+import org.peyto.common.processor.core.jfr.ProcessorEvents;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -9,13 +10,17 @@ public class DaemonSchedulerThread extends Thread {
 
     private static final Logger log = LoggerFactory.getLogger(DaemonSchedulerThread.class);
 
-    private final DefaultProcessorScheduler scheduler;
+    private final SchedulerTimeline scheduler;
     private final ProcessorTimeProvider timeProvider;
     private final ThreadSleeper threadSleeper;
     private final boolean isLogTimeline;
 
-    public DaemonSchedulerThread(DefaultProcessorScheduler scheduler, ProcessorTimeProvider timeProvider, ThreadSleeper threadSleeper, boolean isLogTimeline) {
-        super("processor-scheduler");
+    public DaemonSchedulerThread(SchedulerTimeline scheduler, ProcessorTimeProvider timeProvider, ThreadSleeper threadSleeper, boolean isLogTimeline) {
+        this("processor-scheduler", scheduler, timeProvider, threadSleeper, isLogTimeline);
+    }
+
+    public DaemonSchedulerThread(String name, SchedulerTimeline scheduler, ProcessorTimeProvider timeProvider, ThreadSleeper threadSleeper, boolean isLogTimeline) {
+        super(name);
         super.setDaemon(true);
         this.scheduler = scheduler;
         this.timeProvider = timeProvider;
@@ -41,13 +46,14 @@ public class DaemonSchedulerThread extends Thread {
             while (true) {
                 long currentTimeMillis = timeProvider.getMillis();
                 long nextWakeupMillis = scheduler.nextWakeupTimeMillis();
-                if (nextWakeupMillis != DefaultProcessorScheduler.UNSET_TIMESTAMP && currentTimeMillis >= nextWakeupMillis) {
+                ProcessorEvents.schedulerTick(currentTimeMillis, nextWakeupMillis);
+                if (nextWakeupMillis != SchedulerTimeline.UNSET_TIMESTAMP && currentTimeMillis >= nextWakeupMillis) {
                     log.debug("notifying processor threads");
                     scheduler.notifyThreads(currentTimeMillis);
                 } else {
                     synchronized (threadSleeper) {
                         nextWakeupMillis = scheduler.nextWakeupTimeMillis();
-                        if (nextWakeupMillis == DefaultProcessorScheduler.UNSET_TIMESTAMP) {
+                        if (nextWakeupMillis == SchedulerTimeline.UNSET_TIMESTAMP) {
                             log.debug("sleeping until notified");
                             threadSleeper.doWait();
                         } else {
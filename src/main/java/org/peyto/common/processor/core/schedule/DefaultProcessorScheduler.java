@@ -1,40 +1,75 @@
 package org.peyto.common.processor.core.schedule;
 
+import org.peyto.common.processor.PeriodicMode;
 import org.peyto.common.processor.ProcessorThread;
 import org.peyto.common.processor.ProcessorThreadListener;
 import org.peyto.common.processor.ProcessorTimeProvider;
+import org.peyto.common.processor.core.ConditionalOnProcessorProperty;
 import org.peyto.common.processor.core.ThreadSleeper;
+import org.peyto.common.processor.core.jfr.ProcessorEvents;
+import org.peyto.common.processor.utils.LatencyHistogram;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.Iterator;
-import java.util.LinkedHashSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.SortedMap;
+import java.util.NavigableMap;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import static org.peyto.common.processor.utils.CheckerUtils.checkArg;
 
 @Service
+@ConditionalOnProcessorProperty(name = "processor.scheduler.type", havingValue = "default", matchIfMissing = true)
 /**
  * The purpose of this service is to schedule, when processor threads should awake and ping them at specific timestamps
  */
-public class DefaultProcessorScheduler implements ProcessorScheduler, ProcessorThreadListener {
+public class DefaultProcessorScheduler implements ProcessorScheduler, ProcessorThreadListener, SchedulerTimeline {
 
-    static final long UNSET_TIMESTAMP = -1L;
     private static final Logger log = LoggerFactory.getLogger(DefaultProcessorScheduler.class);
 
+    private final ProcessorTimeProvider processorTimeProvider;
     private final DaemonSchedulerThread daemonSchedulerThread;
+    private final NanoTimerDaemon nanoTimers;
+    private final SchedulerMetrics metrics = new SchedulerMetrics();
+    // records wait and hold time of the timeline, if sampled
+    private final TimedLock timelineLock;
 
     private final Map<Long, ProcessorThread> threadIds = new ConcurrentHashMap<>();
-    private final SortedMap<Long, LinkedHashSet<Long>> timeline = new TreeMap<>();
+
+    // All the fields below are guarded by timelineLock
+    // timestamp -> (timerId -> threadId)
+    private final NavigableMap<Long, LinkedHashMap<Long, Long>> timeline = new TreeMap<>();
+    // Index of pending timers of each thread: threadId -> (timerId -> timestamp)
+    private final Map<Long, Map<Long, Long>> threadTimers = new HashMap<>();
+    // Periodic timers, re-armed on expiration: timerId -> period
+    private final Map<Long, PeriodicTimer> periodicTimers = new HashMap<>();
+    private long lastTimerId = 0;
+    private long timersCount = 0;
 
     // Inject thread sleeper for tests, so we can mock timings
-    public DefaultProcessorScheduler(ProcessorTimeProvider processorTimeProvider, ThreadSleeper sleeper, @Value("#{new Boolean('${processor.scheduler.log.timeline:true}')}") boolean isLogTimeline) {
-        this.daemonSchedulerThread = new DaemonSchedulerThread(this, processorTimeProvider, sleeper, isLogTimeline);
+    @Autowired
+    public DefaultProcessorScheduler(ProcessorTimeProvider processorTimeProvider, ThreadSleeper sleeper, @Value("#{new Boolean('${processor.scheduler.log.timeline:true}')}") boolean isLogTimeline,
+                                     @Value("${processor.scheduler.nanos.spin-micros:50}") long nanosSpinMicros,
+                                     @Value("${processor.scheduler.lock-timing.sample-every:0}") int lockTimingSampleEvery) {
+        this("", processorTimeProvider, sleeper, isLogTimeline, nanosSpinMicros, lockTimingSampleEvery);
+    }
+
+    /**
+     * @param nameSuffix suffix of the daemon threads names, e.g. when the scheduler is a shard
+     */
+    DefaultProcessorScheduler(String nameSuffix, ProcessorTimeProvider processorTimeProvider, ThreadSleeper sleeper, boolean isLogTimeline,
+                              long nanosSpinMicros, int lockTimingSampleEvery) {
+        this.processorTimeProvider = processorTimeProvider;
+        this.timelineLock = new TimedLock(metrics, lockTimingSampleEvery);
+        this.daemonSchedulerThread = new DaemonSchedulerThread("processor-scheduler" + nameSuffix, this, processorTimeProvider, sleeper, isLogTimeline);
+        this.nanoTimers = new NanoTimerDaemon("processor-nano-scheduler" + nameSuffix, processorTimeProvider, threadIds::get,
+                TimeUnit.MICROSECONDS.toNanos(nanosSpinMicros));
         daemonSchedulerThread.start();
     }
 
@@ -45,55 +80,165 @@ public class DefaultProcessorScheduler implements ProcessorScheduler, ProcessorT
     }
 
     @Override
-    public void schedule(long threadId, long timeMillis) {
-        synchronized (timeline) {
-            LinkedHashSet<Long> threadIdsToNotify = timeline.computeIfAbsent(timeMillis, aLong -> new LinkedHashSet<>());
-            threadIdsToNotify.add(threadId);
+    public long schedule(long threadId, long timeMillis) {
+        long timerId;
+        timelineLock.lock();
+        try {
+            timerId = ++lastTimerId;
+            addToTimeline(threadId, timeMillis, timerId);
+        } finally {
+            timelineLock.unlock();
         }
         log.debug("scheduling thread {} at {}", threadId, timeMillis);
         daemonSchedulerThread.pingToRecalculate();
+        return timerId;
     }
 
     @Override
-    @Deprecated
-    public void cancelAllScheduled(long threadId) {
-        synchronized (timeline) {
-            Iterator<Map.Entry<Long, LinkedHashSet<Long>>> iterator = timeline.entrySet().iterator();
-            while (iterator.hasNext()) {
-                Map.Entry<Long, LinkedHashSet<Long>> entry = iterator.next();
-                LinkedHashSet<Long> threadIdsToNotify = entry.getValue();
-                if (threadIdsToNotify.contains(threadId)) {
-                    threadIdsToNotify.remove(threadId);
-                    if (threadIdsToNotify.isEmpty()) {
-                        iterator.remove();
-                    }
+    public long schedulePeriodic(long threadId, long firstTimeMillis, long periodMillis, PeriodicMode mode) {
+        checkArg(periodMillis > 0, "Period should be positive, but was %d", periodMillis);
+        long timerId;
+        timelineLock.lock();
+        try {
+            timerId = ++lastTimerId;
+            addToTimeline(threadId, firstTimeMillis, timerId);
+            periodicTimers.put(timerId, new PeriodicTimer(periodMillis, mode));
+        } finally {
+            timelineLock.unlock();
+        }
+        log.debug("scheduling thread {} at {} every {} ms", threadId, firstTimeMillis, periodMillis);
+        daemonSchedulerThread.pingToRecalculate();
+        return timerId;
+    }
+
+    /**
+     * Joins the earliest timestamp already in the timeline within the slack window, otherwise aligns the timer
+     */
+    @Override
+    public long schedule(long threadId, long timeMillis, long slackMillis) {
+        long alignedMillis = ProcessorScheduler.alignToSlack(timeMillis, slackMillis);
+        long timerId;
+        // looked up and added under one lock, so the joined timestamp can't expire in between
+        timelineLock.lock();
+        try {
+            if (alignedMillis != timeMillis) {
+                Long existingMillis = timeline.ceilingKey(timeMillis);
+                if (existingMillis != null && existingMillis <= alignedMillis) {
+                    alignedMillis = existingMillis;
                 }
             }
+            timerId = ++lastTimerId;
+            addToTimeline(threadId, alignedMillis, timerId);
+        } finally {
+            timelineLock.unlock();
+        }
+        log.debug("scheduling thread {} at {}", threadId, alignedMillis);
+        daemonSchedulerThread.pingToRecalculate();
+        return timerId;
+    }
+
+    @Override
+    public long scheduleNanos(long threadId, long timeNanos) {
+        return -nanoTimers.schedule(threadId, timeNanos);
+    }
+
+    @Override
+    public LatencyHistogram getNanoWakeJitter() {
+        return nanoTimers.getWakeJitter();
+    }
+
+    @Override
+    public boolean cancel(long threadId, long timerId) {
+        if (timerId < 0) {
+            return nanoTimers.cancel(threadId, -timerId);
+        }
+        timelineLock.lock();
+        try {
+            Map<Long, Long> timers = threadTimers.get(threadId);
+            Long timeMillis = timers != null ? timers.remove(timerId) : null;
+            if (timeMillis == null) {
+                return false;
+            }
+            // No need to ping daemon thread, we've just removed from the timeline, so it won't notify threads and there is no problem that daemon thread will wake additionally
+            removeFromTimeline(timeMillis, timerId);
+            periodicTimers.remove(timerId);
+            return true;
+        } finally {
+            timelineLock.unlock();
+        }
+    }
+
+    @Override
+    public void cancelAllScheduled(long threadId) {
+        nanoTimers.cancelAll(threadId);
+        timelineLock.lock();
+        try {
+            Map<Long, Long> timers = threadTimers.get(threadId);
+            if (timers != null) {
+                timers.forEach(this::cancelTimer);
+                timers.clear();
+            }
+        } finally {
+            timelineLock.unlock();
         }
-        // No need to ping daemon thread, we've just removed from the timeline, so it won't notify threads and there is no problem that daemon thread will wake additionally
     }
 
     @Override
     public void onFinish(long threadId) {
         threadIds.remove(threadId);
-        // I don't want to cancel all scheduled wakeups => we'll just ignore them
+        nanoTimers.cancelAll(threadId);
+        timelineLock.lock();
+        try {
+            Map<Long, Long> timers = threadTimers.remove(threadId);
+            if (timers != null) {
+                timers.forEach(this::cancelTimer);
+            }
+        } finally {
+            timelineLock.unlock();
+        }
     }
 
-    long nextWakeupTimeMillis() {
-        synchronized (timeline) {
+    @Override
+    public long nextWakeupTimeMillis() {
+        timelineLock.lock();
+        try {
             return !timeline.isEmpty() ? timeline.firstKey() : UNSET_TIMESTAMP;
+        } finally {
+            timelineLock.unlock();
         }
     }
 
-    void notifyThreads(long currentMillis) {
+    @Override
+    public void notifyThreads(long currentMillis) {
+        Object notifyEvent = ProcessorEvents.beginNotify();
         // we need to make sure ALL past timestamps are notified
-        LinkedHashSet<Long> threadsToNotify = new LinkedHashSet<>();
-        synchronized (timeline) {
+        // threadId -> the earliest expired deadline of the thread
+        LinkedHashMap<Long, Long> threadsToNotify = new LinkedHashMap<>();
+        long earliestDeadline;
+        timelineLock.lock();
+        try {
+            earliestDeadline = !timeline.isEmpty() ? timeline.firstKey() : currentMillis;
+            if (!timeline.isEmpty()) {
+                metrics.getNotifyLagMillis().record(currentMillis - earliestDeadline);
+            }
             while (true) {
                 if (!timeline.isEmpty()) {
                     Long firstTimestampInQueue = timeline.firstKey();
                     if (currentMillis >= firstTimestampInQueue) {
-                        threadsToNotify.addAll(timeline.remove(firstTimestampInQueue));
+                        for (Map.Entry<Long, Long> timer : timeline.remove(firstTimestampInQueue).entrySet()) {
+                            Map<Long, Long> timers = threadTimers.get(timer.getValue());
+                            if (timers != null) {
+                                timers.remove(timer.getKey());
+                            }
+                            timersCount--;
+                            PeriodicTimer periodicTimer = periodicTimers.get(timer.getKey());
+                            if (periodicTimer != null) {
+                                // the next time is in the future, so it isn't fired in this loop
+                                addToTimeline(timer.getValue(), ProcessorScheduler.nextPeriodicTime(firstTimestampInQueue,
+                                        currentMillis, periodicTimer.periodMillis, periodicTimer.mode), timer.getKey());
+                            }
+                            threadsToNotify.putIfAbsent(timer.getValue(), firstTimestampInQueue);
+                        }
                     } else {
                         break;
                     }
@@ -101,50 +246,90 @@ public class DefaultProcessorScheduler implements ProcessorScheduler, ProcessorT
                     break;
                 }
             }
+        } finally {
+            timelineLock.unlock();
         }
         // We move notify processors out of the sync block
         // This is executed from single thread only, no need for any additional synchronization
-        for (Long threadId : threadsToNotify) {
-            ProcessorThread thread = threadIds.get(threadId);
+        for (Map.Entry<Long, Long> threadToNotify : threadsToNotify.entrySet()) {
+            ProcessorThread thread = threadIds.get(threadToNotify.getKey());
             if (thread != null) {
-                log.debug("notifying processor thread id {}", threadId);
-                thread.wakeProcessor();
+                log.debug("notifying processor thread id {}", threadToNotify.getKey());
+                thread.onScheduledWakeup(threadToNotify.getValue());
             }
         }
+        if (!threadsToNotify.isEmpty()) {
+            metrics.getWakeupLagMillis().record(processorTimeProvider.getMillis() - earliestDeadline);
+        }
+        if (notifyEvent != null) {
+            ProcessorEvents.commitNotify(notifyEvent, currentMillis, threadsToNotify.size());
+        }
     }
 
-    String timelineAsLimitedString(long currentTimestampMillis) {
-        StringBuilder builder = new StringBuilder();
-        builder.append("[");
-        synchronized (timeline) {
-            for (Long timestampMillis : timeline.keySet()) {
-                if (builder.length() > 80) {
-                    builder.setLength(builder.length() - 2); // remove last comma
-                    builder.append("...]");
-                    return builder.toString();
-                }
-                long delta = timestampMillis - currentTimestampMillis;
-                if (timestampMillis == Long.MAX_VALUE) {
-                    builder.append("MAX");
-                } else if (delta > 600 * 1000) { // > 10 mins
-                    builder.append(delta / 60000).append("m");
-                } else if (delta > 10000) { // > 10 sec
-                    builder.append(delta / 1000).append("s");
-                } else { // < 10 sec
-                    builder.append(delta).append("ms");
-                    ;
-                }
+    /**
+     * @return distribution of time between the deadline and the moment all the expired threads were woken
+     */
+    public LatencyHistogram getWakeupLagMillis() {
+        return metrics.getWakeupLagMillis();
+    }
 
-                builder.append(" : ");
-                for (Long threadId : timeline.get(timestampMillis)) {
-                    builder.append(threadId).append(",");
-                }
-                builder.setLength(builder.length() - 1); // remove last comma
-                builder.append(", ");
+    @Override
+    public SchedulerMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public SchedulerSnapshot snapshot() {
+        timelineLock.lock();
+        try {
+            return new SchedulerSnapshot(new long[]{timersCount}, !timeline.isEmpty() ? timeline.firstKey() : UNSET_TIMESTAMP);
+        } finally {
+            timelineLock.unlock();
+        }
+    }
+
+    @Override
+    public String timelineAsLimitedString(long currentTimestampMillis) {
+        timelineLock.lock();
+        try {
+            return TimelineFormatter.asLimitedString(timeline, currentTimestampMillis);
+        } finally {
+            timelineLock.unlock();
+        }
+    }
+
+    private void addToTimeline(long threadId, long timeMillis, long timerId) {
+        if (timeline.computeIfAbsent(timeMillis, aLong -> new LinkedHashMap<>()).put(timerId, threadId) == null) {
+            timersCount++;
+        }
+        threadTimers.computeIfAbsent(threadId, aLong -> new HashMap<>()).put(timerId, timeMillis);
+    }
+
+    private void cancelTimer(long timerId, long timeMillis) {
+        periodicTimers.remove(timerId);
+        removeFromTimeline(timeMillis, timerId);
+    }
+
+    private void removeFromTimeline(long timeMillis, long timerId) {
+        LinkedHashMap<Long, Long> timers = timeline.get(timeMillis);
+        if (timers != null) {
+            if (timers.remove(timerId) != null) {
+                timersCount--;
+            }
+            if (timers.isEmpty()) {
+                timeline.remove(timeMillis);
             }
         }
-        builder.setLength(builder.length() - 2); // remove last comma
-        builder.append("]");
-        return builder.toString();
+    }
+
+    private static final class PeriodicTimer {
+
+        private final long periodMillis;
+        private final PeriodicMode mode;
+
+        private PeriodicTimer(long periodMillis, PeriodicMode mode) {
+            this.periodMillis = periodMillis;
+            this.mode = mode;
+        }
     }
 }
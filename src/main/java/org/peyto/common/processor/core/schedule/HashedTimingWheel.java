@@ -0,0 +1,220 @@
+package org.peyto.common.processor.core.schedule;
+
+import java.util.Arrays;
+
+/**
+ * Hierarchical hashed timing wheel with 1 ms tick, storing (deadline, value) pairs in primitive buckets.
+ * <p>
+ * Level L keeps the timers, which share all the bits above (L + 1) * 8 with the cursor, hashed by the bits
+ * [L * 8, (L + 1) * 8) of the deadline. So every level is strictly later than the previous one, level 0 buckets
+ * have exact deadlines and a timer is cascaded to a lower level at most {@link #LEVELS} times.
+ * Timers further than 2^32 ms (~49 days) are kept in a separate overflow bucket.
+ * <p>
+ * Not thread safe.
+ */
+final class HashedTimingWheel {
+
+    static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private static final int SLOT_BITS = 8;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    private final LongPairBuffer[][] buckets = new LongPairBuffer[LEVELS][SLOTS];
+    private final long[][] occupiedSlots = new long[LEVELS][SLOTS / Long.SIZE];
+    private final long[][] bucketMinDeadline = new long[LEVELS][SLOTS];
+
+    private final LongPairBuffer overflow = new LongPairBuffer(16);
+    private long overflowMinDeadline = NO_DEADLINE;
+
+    private final LongPairBuffer due = new LongPairBuffer(64);
+    private long dueMinDeadline = NO_DEADLINE;
+
+    private final LongPairBuffer cascading = new LongPairBuffer(64);
+
+    private long cursor;
+    private int size;
+
+    HashedTimingWheel(long startMillis) {
+        this.cursor = startMillis;
+        for (long[] levelMinDeadlines : bucketMinDeadline) {
+            Arrays.fill(levelMinDeadlines, NO_DEADLINE);
+        }
+    }
+
+    void add(long deadline, long value) {
+        size++;
+        place(deadline, value);
+    }
+
+    /**
+     * Move the cursor to now (if it's ahead) and move all the timers with deadline <= now to expired buffer
+     */
+    void expire(long now, LongPairBuffer expired) {
+        advance(now);
+        for (int i = 0; i < due.size(); i++) {
+            expired.add(due.first(i), due.second(i));
+        }
+        size -= due.size();
+        due.clear();
+        dueMinDeadline = NO_DEADLINE;
+    }
+
+    /**
+     * @return the earliest deadline in the wheel or {@link #NO_DEADLINE}. The timers are never removed from
+     * buckets before expiration, so the value is exact
+     */
+    long nextDeadline() {
+        if (!due.isEmpty()) {
+            return dueMinDeadline;
+        }
+        for (int level = 0; level < LEVELS; level++) {
+            int slot = nextOccupiedSlot(level, slotOf(cursor, level) + 1);
+            if (slot >= 0) {
+                return level == 0 ? (cursor & ~SLOT_MASK) | slot : bucketMinDeadline[level][slot];
+            }
+        }
+        return overflowMinDeadline;
+    }
+
+    /**
+     * Cursor can be moved freely, while there are no timers. It allows to keep new timers on the lowest levels
+     */
+    void moveCursorIfEmpty(long now) {
+        if (size == 0 && now > cursor) {
+            cursor = now;
+        }
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Copy all the timers to the target buffer, not ordered. Used for debugging only
+     */
+    void copyTo(LongPairBuffer target) {
+        copy(due, target);
+        for (LongPairBuffer[] levelBuckets : buckets) {
+            for (LongPairBuffer bucket : levelBuckets) {
+                if (bucket != null) {
+                    copy(bucket, target);
+                }
+            }
+        }
+        copy(overflow, target);
+    }
+
+    private void place(long deadline, long value) {
+        if (deadline <= cursor) {
+            due.add(deadline, value);
+            dueMinDeadline = Math.min(dueMinDeadline, deadline);
+            return;
+        }
+        int level = (63 - Long.numberOfLeadingZeros(deadline ^ cursor)) / SLOT_BITS;
+        if (level >= LEVELS) {
+            overflow.add(deadline, value);
+            overflowMinDeadline = Math.min(overflowMinDeadline, deadline);
+            return;
+        }
+        int slot = slotOf(deadline, level);
+        LongPairBuffer bucket = buckets[level][slot];
+        if (bucket == null) {
+            bucket = new LongPairBuffer(4);
+            buckets[level][slot] = bucket;
+        }
+        bucket.add(deadline, value);
+        occupiedSlots[level][slot >>> 6] |= 1L << slot;
+        if (deadline < bucketMinDeadline[level][slot]) {
+            bucketMinDeadline[level][slot] = deadline;
+        }
+    }
+
+    private void advance(long now) {
+        if (now <= cursor) {
+            return;
+        }
+        long previous = cursor;
+        cursor = now;
+        for (int level = 0; level < LEVELS; level++) {
+            int rotationShift = (level + 1) * SLOT_BITS;
+            int previousSlot = slotOf(previous, level);
+            if ((previous >>> rotationShift) != (now >>> rotationShift)) {
+                // the whole rotation of the level has passed, all its timers are due
+                expireSlots(level, previousSlot + 1, SLOT_MASK);
+            } else if (level == 0) {
+                expireSlots(level, previousSlot + 1, slotOf(now, level));
+            } else {
+                int nowSlot = slotOf(now, level);
+                expireSlots(level, previousSlot + 1, nowSlot - 1);
+                if (nowSlot > previousSlot && isOccupied(level, nowSlot)) {
+                    // current bucket of upper level is partially passed, spread it over the lower levels
+                    takeSlot(level, nowSlot, cascading);
+                }
+            }
+        }
+        if ((previous >>> (LEVELS * SLOT_BITS)) != (now >>> (LEVELS * SLOT_BITS)) && !overflow.isEmpty()) {
+            copy(overflow, cascading);
+            overflow.clear();
+            overflowMinDeadline = NO_DEADLINE;
+        }
+        for (int i = 0; i < cascading.size(); i++) {
+            place(cascading.first(i), cascading.second(i));
+        }
+        cascading.clear();
+    }
+
+    private void expireSlots(int level, int fromSlot, int toSlot) {
+        int slot = nextOccupiedSlot(level, fromSlot);
+        while (slot >= 0 && slot <= toSlot) {
+            dueMinDeadline = Math.min(dueMinDeadline, bucketMinDeadline[level][slot]);
+            takeSlot(level, slot, due);
+            slot = nextOccupiedSlot(level, slot + 1);
+        }
+    }
+
+    private void takeSlot(int level, int slot, LongPairBuffer target) {
+        LongPairBuffer bucket = buckets[level][slot];
+        copy(bucket, target);
+        bucket.clear();
+        occupiedSlots[level][slot >>> 6] &= ~(1L << slot);
+        bucketMinDeadline[level][slot] = NO_DEADLINE;
+    }
+
+    private boolean isOccupied(int level, int slot) {
+        return (occupiedSlots[level][slot >>> 6] & (1L << slot)) != 0;
+    }
+
+    private int nextOccupiedSlot(int level, int fromSlot) {
+        if (fromSlot >= SLOTS) {
+            return -1;
+        }
+        long[] occupied = occupiedSlots[level];
+        int word = fromSlot >>> 6;
+        long bits = occupied[word] & (-1L << fromSlot);
+        while (true) {
+            if (bits != 0) {
+                return (word << 6) + Long.numberOfTrailingZeros(bits);
+            }
+            if (++word == occupied.length) {
+                return -1;
+            }
+            bits = occupied[word];
+        }
+    }
+
+    private static int slotOf(long millis, int level) {
+        return (int) (millis >>> (level * SLOT_BITS)) & SLOT_MASK;
+    }
+
+    private static void copy(LongPairBuffer source, LongPairBuffer target) {
+        for (int i = 0; i < source.size(); i++) {
+            target.add(source.first(i), source.second(i));
+        }
+    }
+}
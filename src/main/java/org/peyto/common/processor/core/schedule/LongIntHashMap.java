@@ -0,0 +1,107 @@
+package org.peyto.common.processor.core.schedule;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing map of long keys to int values, so thread ids can be looked up without boxing.
+ * Long.MIN_VALUE key is reserved. Not thread safe.
+ */
+final class LongIntHashMap {
+
+    static final int MISSING_VALUE = -1;
+
+    private static final long EMPTY_KEY = Long.MIN_VALUE;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(8, expectedSize * 2) - 1) << 1;
+        allocate(capacity);
+    }
+
+    int get(long key) {
+        for (int index = indexOf(key); ; index = (index + 1) & mask) {
+            if (keys[index] == key) {
+                return values[index];
+            }
+            if (keys[index] == EMPTY_KEY) {
+                return MISSING_VALUE;
+            }
+        }
+    }
+
+    void put(long key, int value) {
+        int index = indexOf(key);
+        while (keys[index] != EMPTY_KEY && keys[index] != key) {
+            index = (index + 1) & mask;
+        }
+        if (keys[index] == EMPTY_KEY) {
+            keys[index] = key;
+            if (++size > (mask >> 1)) {
+                values[index] = value;
+                rehash(keys.length << 1);
+                return;
+            }
+        }
+        values[index] = value;
+    }
+
+    int remove(long key) {
+        int index = indexOf(key);
+        while (keys[index] != key) {
+            if (keys[index] == EMPTY_KEY) {
+                return MISSING_VALUE;
+            }
+            index = (index + 1) & mask;
+        }
+        int value = values[index];
+        keys[index] = EMPTY_KEY;
+        size--;
+        // shift back the following entries of the same probe sequence
+        for (int next = (index + 1) & mask; keys[next] != EMPTY_KEY; next = (next + 1) & mask) {
+            int ideal = indexOf(keys[next]);
+            if (((next - ideal) & mask) >= ((next - index) & mask)) {
+                keys[index] = keys[next];
+                values[index] = values[next];
+                keys[next] = EMPTY_KEY;
+                index = next;
+            }
+        }
+        return value;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int indexOf(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY_KEY) {
+                int index = indexOf(oldKeys[i]);
+                while (keys[index] != EMPTY_KEY) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY_KEY);
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+}
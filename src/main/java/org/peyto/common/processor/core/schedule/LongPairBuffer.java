@@ -0,0 +1,50 @@
+package org.peyto.common.processor.core.schedule;
+
+import java.util.Arrays;
+
+/**
+ * Growable array of (long, long) pairs, so the timers can be stored without boxing and per-entry allocations.
+ * Not thread safe.
+ */
+final class LongPairBuffer {
+
+    private long[] first;
+    private long[] second;
+    private int size;
+
+    LongPairBuffer(int initialCapacity) {
+        this.first = new long[initialCapacity];
+        this.second = new long[initialCapacity];
+    }
+
+    void add(long firstValue, long secondValue) {
+        if (size == first.length) {
+            int newCapacity = Math.max(4, size << 1);
+            first = Arrays.copyOf(first, newCapacity);
+            second = Arrays.copyOf(second, newCapacity);
+        }
+        first[size] = firstValue;
+        second[size] = secondValue;
+        size++;
+    }
+
+    long first(int index) {
+        return first[index];
+    }
+
+    long second(int index) {
+        return second[index];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        size = 0;
+    }
+}
@@ -0,0 +1,182 @@
+package org.peyto.common.processor.core.schedule;
+
+import org.peyto.common.processor.ProcessorThread;
+import org.peyto.common.processor.ProcessorTimeProvider;
+import org.peyto.common.processor.utils.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongFunction;
+
+/**
+ * Sub-millisecond timers, see {@link ProcessorScheduler#scheduleNanos(long, long)}. Deadlines are in
+ * {@link ProcessorTimeProvider#getNanos()} clock. The daemon parks until spinNanos before the earliest deadline
+ * (park overshoots by tens of micros), then spins for the rest, so the wake jitter is the cost of unpark.
+ * Measured jitter (fire time - deadline) is recorded in {@link #getWakeJitter()}. Threads are woken with
+ * {@link ProcessorThread#onScheduledWakeup}, the deadline converted to the getMillis() clock of the cycles.
+ * <p>
+ * Nano timers are expected to be few (pacing, throttling), so they are kept in a priority queue under the lock,
+ * and cancelled timers are removed from it right away.
+ * The daemon thread is started with the first timer.
+ */
+class NanoTimerDaemon implements Runnable {
+
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private final ProcessorTimeProvider timeProvider;
+    private final LongFunction<ProcessorThread> threads;
+    private final long spinNanos;
+    private final Thread daemonThread;
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    private final LatencyHistogram wakeJitter = new LatencyHistogram();
+
+    // All the fields below are guarded by this
+    private final PriorityQueue<NanoTimer> timeline = new PriorityQueue<>();
+    private final Map<Long, NanoTimer> timers = new HashMap<>();
+    private long lastTimerId = 0;
+
+    // deadline of the timeline head, so daemon can spin without the lock
+    private volatile long headDeadline = NO_DEADLINE;
+
+    // used by daemon thread only
+    private final List<NanoTimer> fired = new ArrayList<>();
+
+    NanoTimerDaemon(String name, ProcessorTimeProvider timeProvider, LongFunction<ProcessorThread> threads, long spinNanos) {
+        this.timeProvider = timeProvider;
+        this.threads = threads;
+        this.spinNanos = spinNanos;
+        this.daemonThread = new Thread(this, name);
+        daemonThread.setDaemon(true);
+    }
+
+    /**
+     * @return positive id of the timer
+     */
+    long schedule(long threadId, long timeNanos) {
+        if (!started.get() && started.compareAndSet(false, true)) {
+            daemonThread.start();
+        }
+        boolean earliest;
+        long timerId;
+        synchronized (this) {
+            timerId = ++lastTimerId;
+            NanoTimer timer = new NanoTimer(timerId, threadId, timeNanos);
+            timeline.add(timer);
+            timers.put(timerId, timer);
+            earliest = timeNanos < headDeadline;
+            if (earliest) {
+                headDeadline = timeNanos;
+            }
+        }
+        if (earliest) {
+            LockSupport.unpark(daemonThread);
+        }
+        return timerId;
+    }
+
+    synchronized boolean cancel(long threadId, long timerId) {
+        NanoTimer timer = timers.get(timerId);
+        if (timer == null || timer.threadId != threadId) {
+            return false;
+        }
+        timers.remove(timerId);
+        timeline.remove(timer);
+        updateHeadDeadline();
+        return true;
+    }
+
+    synchronized void cancelAll(long threadId) {
+        Iterator<NanoTimer> iterator = timers.values().iterator();
+        while (iterator.hasNext()) {
+            NanoTimer timer = iterator.next();
+            if (timer.threadId == threadId) {
+                timeline.remove(timer);
+                iterator.remove();
+            }
+        }
+        updateHeadDeadline();
+    }
+
+    /**
+     * Guarded by this. Daemon may wake for the removed head, it just re-reads the new one
+     */
+    private void updateHeadDeadline() {
+        NanoTimer head = timeline.peek();
+        headDeadline = head != null ? head.deadline : NO_DEADLINE;
+    }
+
+    synchronized int getPendingCount() {
+        return timeline.size();
+    }
+
+    LatencyHistogram getWakeJitter() {
+        return wakeJitter;
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            long deadline = headDeadline;
+            if (deadline == NO_DEADLINE) {
+                LockSupport.park(this);
+                continue;
+            }
+            long remaining = deadline - timeProvider.getNanos();
+            if (remaining > spinNanos) {
+                LockSupport.parkNanos(this, remaining - spinNanos);
+            } else if (remaining <= 0) {
+                fire();
+            }
+            // else spin, re-reading the head, as the earlier timer might be scheduled meanwhile
+        }
+    }
+
+    private void fire() {
+        long now = timeProvider.getNanos();
+        long nowMillis = timeProvider.getMillis();
+        synchronized (this) {
+            NanoTimer head;
+            while ((head = timeline.peek()) != null && head.deadline <= now) {
+                timeline.poll();
+                timers.remove(head.timerId);
+                fired.add(head);
+            }
+            updateHeadDeadline();
+        }
+        for (int i = 0; i < fired.size(); i++) {
+            NanoTimer timer = fired.get(i);
+            ProcessorThread thread = threads.apply(timer.threadId);
+            if (thread != null) {
+                thread.onScheduledWakeup(nowMillis - TimeUnit.NANOSECONDS.toMillis(now - timer.deadline));
+            }
+            wakeJitter.record(now - timer.deadline);
+        }
+        fired.clear();
+    }
+
+    private static final class NanoTimer implements Comparable<NanoTimer> {
+
+        private final long timerId;
+        private final long threadId;
+        private final long deadline;
+
+        private NanoTimer(long timerId, long threadId, long deadline) {
+            this.timerId = timerId;
+            this.threadId = threadId;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public int compareTo(NanoTimer other) {
+            int byDeadline = Long.compare(deadline, other.deadline);
+            return byDeadline != 0 ? byDeadline : Long.compare(timerId, other.timerId);
+        }
+    }
+}
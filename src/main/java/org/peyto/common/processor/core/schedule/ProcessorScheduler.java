@@ -1,25 +1,110 @@
 package org.peyto.common.processor.core.schedule;
 
+import org.peyto.common.processor.PeriodicMode;
 import org.peyto.common.processor.ProcessorThread;
 import org.peyto.common.processor.ProcessorThreadListener;
+import org.peyto.common.processor.utils.LatencyHistogram;
+
+import static org.peyto.common.processor.utils.CheckerUtils.checkArg;
 
 public interface ProcessorScheduler extends ProcessorThreadListener {
 
     void registerThread(long threadId, ProcessorThread thread);
 
-    void schedule(long threadId, long timeMillis);
+    /**
+     * @return positive id of the scheduled timer, which can be used to cancel it
+     */
+    long schedule(long threadId, long timeMillis);
 
     /**
-     * Cancel all schedule wakes of the Processor Thread, scheduled earlier.
+     * Schedule the timer, which may fire at any moment in [timeMillis, timeMillis + slackMillis]. Timers with
+     * overlapping windows are aligned to the same timestamp, so the daemon wakes once for all of them.
+     * The default implementation picks the timestamp of the window with the most trailing zero bits, so it doesn't
+     * depend on other timers, but converges windows of similar size
+     *
+     * @return positive id of the scheduled timer, which can be used to cancel it
+     */
+    default long schedule(long threadId, long timeMillis, long slackMillis) {
+        return schedule(threadId, alignToSlack(timeMillis, slackMillis));
+    }
+
+    static long alignToSlack(long timeMillis, long slackMillis) {
+        checkArg(slackMillis >= 0, "Slack shouldn't be negative, but was %d", slackMillis);
+        long windowEnd = timeMillis + slackMillis;
+        if (slackMillis == 0 || windowEnd < timeMillis) {
+            return timeMillis;
+        }
+        // common prefix of the window bounds, followed by the first differing bit (it's set in windowEnd) and zeros,
+        // unless timeMillis itself has all zeros from that bit
+        long firstDifferentBit = Long.highestOneBit(timeMillis ^ windowEnd);
+        if ((timeMillis & ((firstDifferentBit << 1) - 1)) == 0) {
+            return timeMillis;
+        }
+        return windowEnd & ~(firstDifferentBit - 1);
+    }
+
+    /**
+     * Schedule the timer, which is re-armed by the scheduler after every expiration, until it's cancelled.
+     * The timer keeps its id, so it can be cancelled as any other timer
      *
-     * @deprecated It's better not to use this method, because additional scheduling shouldn't affect processor state,
-     * it should be idempotent. But cancelling can be pretty costly operation, since it needs to iterate the whole
-     * timeline map. The timeline is based on the timestamps and there is no index to find scheduled threads.
-     * So, the method will be synchronized for some time, and it can affect performance of other processor threads.
+     * @return positive id of the scheduled timer
+     */
+    long schedulePeriodic(long threadId, long firstTimeMillis, long periodMillis, PeriodicMode mode);
+
+    /**
+     * @return the next deadline of the periodic timer, which has expired at deadlineMillis, and is fired at
+     * currentMillis. Missed periods are folded, so the next deadline is always in the future
+     */
+    static long nextPeriodicTime(long deadlineMillis, long currentMillis, long periodMillis, PeriodicMode mode) {
+        if (mode == PeriodicMode.FIXED_DELAY) {
+            return currentMillis + periodMillis;
+        }
+        long missedPeriods = (currentMillis - deadlineMillis) / periodMillis;
+        return deadlineMillis + (missedPeriods + 1) * periodMillis;
+    }
+
+    /**
+     * Schedule with sub-millisecond precision, see {@link NanoTimerDaemon}
+     *
+     * @param timeNanos deadline in {@link org.peyto.common.processor.ProcessorTimeProvider#getNanos()} clock
+     * @return negative id of the scheduled timer, which can be used to cancel it
+     */
+    long scheduleNanos(long threadId, long timeNanos);
+
+    /**
+     * @return distribution of the difference between the actual wake time of nano timers and their deadlines
+     */
+    LatencyHistogram getNanoWakeJitter();
+
+    /**
+     * @return histograms of the scheduler lags and contention of its timeline lock
+     */
+    SchedulerMetrics getMetrics();
+
+    /**
+     * @return bounded view of the pending millis timers: their number per shard and the earliest deadline
+     */
+    SchedulerSnapshot snapshot();
+
+    /**
+     * Cancel the timer, scheduled earlier (either millis or nanos). The scheduler keeps index of pending timers per thread, so it doesn't
+     * iterate the timeline.
+     *
+     * @return true if the timer was pending, false if it has already fired or was cancelled
+     */
+    boolean cancel(long threadId, long timerId);
+
+    /**
+     * Cancel all schedule wakes of the Processor Thread, scheduled earlier.
+     * The cost is proportional to the number of pending timers of the thread, not the whole timeline.
      *
      * @param threadId Processor thread id to cancel all scheduling
      */
-    @Deprecated
     void cancelAllScheduled(long threadId);
 
+    /**
+     * Thread has finished, all its pending timers are purged from the timeline
+     */
+    @Override
+    void onFinish(long threadId);
 }
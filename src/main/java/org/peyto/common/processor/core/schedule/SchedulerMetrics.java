@@ -0,0 +1,61 @@
+package org.peyto.common.processor.core.schedule;
+
+import org.peyto.common.processor.utils.LatencyHistogram;
+
+/**
+ * Histograms of the scheduler delays, so the saturated scheduler can be seen before processors run late.
+ * Recorded by the daemon thread (lags) and by all the threads, taking the timeline lock
+ */
+public final class SchedulerMetrics {
+
+    private final LatencyHistogram notifyLagMillis = new LatencyHistogram();
+    private final LatencyHistogram wakeupLagMillis = new LatencyHistogram();
+    private final LatencyHistogram lockWaitNanos = new LatencyHistogram();
+    private final LatencyHistogram lockHoldNanos = new LatencyHistogram();
+
+    /**
+     * @return distribution of time between the earliest expired deadline and the moment the daemon has started
+     * notifying its threads
+     */
+    public LatencyHistogram getNotifyLagMillis() {
+        return notifyLagMillis;
+    }
+
+    /**
+     * @return distribution of time between the earliest expired deadline and the moment all its threads were woken
+     */
+    public LatencyHistogram getWakeupLagMillis() {
+        return wakeupLagMillis;
+    }
+
+    /**
+     * @return distribution of time the threads wait for the timeline lock. Only sampled acquisitions are recorded,
+     * see processor.scheduler.lock-timing.sample-every
+     */
+    public LatencyHistogram getLockWaitNanos() {
+        return lockWaitNanos;
+    }
+
+    /**
+     * @return distribution of time the timeline lock is held (sampled acquisitions only)
+     */
+    public LatencyHistogram getLockHoldNanos() {
+        return lockHoldNanos;
+    }
+
+    /**
+     * Add all the values of other metrics, e.g. to aggregate metrics of shards
+     */
+    public void add(SchedulerMetrics other) {
+        notifyLagMillis.add(other.notifyLagMillis);
+        wakeupLagMillis.add(other.wakeupLagMillis);
+        lockWaitNanos.add(other.lockWaitNanos);
+        lockHoldNanos.add(other.lockHoldNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "SchedulerMetrics{notifyLagMillis=" + notifyLagMillis + ", wakeupLagMillis=" + wakeupLagMillis
+                + ", lockWaitNanos=" + lockWaitNanos + ", lockHoldNanos=" + lockHoldNanos + '}';
+    }
+}
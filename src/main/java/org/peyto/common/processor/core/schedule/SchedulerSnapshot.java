@@ -0,0 +1,48 @@
+package org.peyto.common.processor.core.schedule;
+
+import java.util.Arrays;
+
+/**
+ * Point-in-time view of the pending timers. Its size doesn't depend on the number of timers, so it can be taken
+ * by the monitoring on every poll
+ */
+public final class SchedulerSnapshot {
+
+    private final long[] timersPerShard;
+    private final long earliestDeadlineMillis;
+
+    /**
+     * @param timersPerShard pending millis timers of each shard (lock stripe for the timing wheel)
+     * @param earliestDeadlineMillis the earliest deadline or {@link SchedulerTimeline#UNSET_TIMESTAMP}
+     */
+    public SchedulerSnapshot(long[] timersPerShard, long earliestDeadlineMillis) {
+        this.timersPerShard = timersPerShard.clone();
+        this.earliestDeadlineMillis = earliestDeadlineMillis;
+    }
+
+    public long getTimersCount() {
+        long count = 0;
+        for (long shardTimers : timersPerShard) {
+            count += shardTimers;
+        }
+        return count;
+    }
+
+    public long getEarliestDeadlineMillis() {
+        return earliestDeadlineMillis;
+    }
+
+    public int getShardsCount() {
+        return timersPerShard.length;
+    }
+
+    public long getTimersCount(int shard) {
+        return timersPerShard[shard];
+    }
+
+    @Override
+    public String toString() {
+        return "SchedulerSnapshot{timers=" + getTimersCount() + ", earliestDeadlineMillis=" + earliestDeadlineMillis
+                + ", timersPerShard=" + Arrays.toString(timersPerShard) + '}';
+    }
+}
@@ -0,0 +1,22 @@
+package org.peyto.common.processor.core.schedule;
+
+/**
+ * Timeline of scheduled wakeups, which is served by {@link DaemonSchedulerThread}.
+ * All the methods are called from the daemon thread only (timelineAsLimitedString also from debug/tests)
+ */
+public interface SchedulerTimeline {
+
+    long UNSET_TIMESTAMP = -1L;
+
+    /**
+     * @return the earliest scheduled timestamp or {@link #UNSET_TIMESTAMP} if nothing is scheduled
+     */
+    long nextWakeupTimeMillis();
+
+    /**
+     * Wake all processor threads, which were scheduled at or before currentMillis
+     */
+    void notifyThreads(long currentMillis);
+
+    String timelineAsLimitedString(long currentTimestampMillis);
+}
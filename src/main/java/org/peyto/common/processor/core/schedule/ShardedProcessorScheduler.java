@@ -0,0 +1,138 @@
+package org.peyto.common.processor.core.schedule;
+
+import org.peyto.common.processor.PeriodicMode;
+import org.peyto.common.processor.ProcessorThread;
+import org.peyto.common.processor.ProcessorTimeProvider;
+import org.peyto.common.processor.core.ConditionalOnProcessorProperty;
+import org.peyto.common.processor.core.DefaultThreadSleeper;
+import org.peyto.common.processor.utils.LatencyHistogram;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import static org.peyto.common.processor.utils.CheckerUtils.checkArg;
+
+/**
+ * Scheduler (enabled by processor.scheduler.type=sharded), which splits the timeline by thread id into the shards,
+ * each with its own lock and daemon thread (processor-scheduler-N). So the timers, which expire together
+ * (e.g. on a minute boundary), are fanned out by all the shards in parallel.
+ * Timer ids are unique within the shard only, but the timer is always cancelled with its thread id.
+ */
+@Service
+@ConditionalOnProcessorProperty(name = "processor.scheduler.type", havingValue = "sharded")
+public class ShardedProcessorScheduler implements ProcessorScheduler {
+
+    private final DefaultProcessorScheduler[] shards;
+
+    public ShardedProcessorScheduler(ProcessorTimeProvider processorTimeProvider,
+                                     @Value("#{new Boolean('${processor.scheduler.log.timeline:true}')}") boolean isLogTimeline,
+                                     @Value("${processor.scheduler.nanos.spin-micros:50}") long nanosSpinMicros,
+                                     @Value("${processor.scheduler.shards:0}") int shardsCount,
+                                     @Value("${processor.scheduler.lock-timing.sample-every:0}") int lockTimingSampleEvery) {
+        checkArg(shardsCount >= 0, "Shards count shouldn't be negative, but was %d", shardsCount);
+        int count = shardsCount > 0 ? shardsCount : Runtime.getRuntime().availableProcessors();
+        this.shards = new DefaultProcessorScheduler[count];
+        for (int i = 0; i < count; i++) {
+            // each daemon waits on its own sleeper
+            shards[i] = new DefaultProcessorScheduler("-" + i, processorTimeProvider, new DefaultThreadSleeper(),
+                    isLogTimeline, nanosSpinMicros, lockTimingSampleEvery);
+        }
+    }
+
+    @Override
+    public void registerThread(long threadId, ProcessorThread thread) {
+        shardOf(threadId).registerThread(threadId, thread);
+    }
+
+    @Override
+    public long schedule(long threadId, long timeMillis) {
+        return shardOf(threadId).schedule(threadId, timeMillis);
+    }
+
+    @Override
+    public long schedule(long threadId, long timeMillis, long slackMillis) {
+        return shardOf(threadId).schedule(threadId, timeMillis, slackMillis);
+    }
+
+    @Override
+    public long schedulePeriodic(long threadId, long firstTimeMillis, long periodMillis, PeriodicMode mode) {
+        return shardOf(threadId).schedulePeriodic(threadId, firstTimeMillis, periodMillis, mode);
+    }
+
+    @Override
+    public long scheduleNanos(long threadId, long timeNanos) {
+        return shardOf(threadId).scheduleNanos(threadId, timeNanos);
+    }
+
+    /**
+     * @return snapshot of the jitter, aggregated over the shards
+     */
+    @Override
+    public LatencyHistogram getNanoWakeJitter() {
+        LatencyHistogram jitter = new LatencyHistogram();
+        for (DefaultProcessorScheduler shard : shards) {
+            jitter.add(shard.getNanoWakeJitter());
+        }
+        return jitter;
+    }
+
+    /**
+     * @return snapshot of the metrics, aggregated over the shards
+     */
+    @Override
+    public SchedulerMetrics getMetrics() {
+        SchedulerMetrics metrics = new SchedulerMetrics();
+        for (DefaultProcessorScheduler shard : shards) {
+            metrics.add(shard.getMetrics());
+        }
+        return metrics;
+    }
+
+    @Override
+    public SchedulerSnapshot snapshot() {
+        long[] timersPerShard = new long[shards.length];
+        long earliestDeadline = SchedulerTimeline.UNSET_TIMESTAMP;
+        for (int i = 0; i < shards.length; i++) {
+            SchedulerSnapshot shardSnapshot = shards[i].snapshot();
+            timersPerShard[i] = shardSnapshot.getTimersCount();
+            long shardDeadline = shardSnapshot.getEarliestDeadlineMillis();
+            if (shardDeadline != SchedulerTimeline.UNSET_TIMESTAMP
+                    && (earliestDeadline == SchedulerTimeline.UNSET_TIMESTAMP || shardDeadline < earliestDeadline)) {
+                earliestDeadline = shardDeadline;
+            }
+        }
+        return new SchedulerSnapshot(timersPerShard, earliestDeadline);
+    }
+
+    @Override
+    public boolean cancel(long threadId, long timerId) {
+        return shardOf(threadId).cancel(threadId, timerId);
+    }
+
+    @Override
+    public void cancelAllScheduled(long threadId) {
+        shardOf(threadId).cancelAllScheduled(threadId);
+    }
+
+    @Override
+    public void onFinish(long threadId) {
+        shardOf(threadId).onFinish(threadId);
+    }
+
+    public int getShardsCount() {
+        return shards.length;
+    }
+
+    /**
+     * @return distribution of time between the deadline and the moment all the expired threads of the shard
+     * were woken
+     */
+    public LatencyHistogram getShardWakeupLagMillis(int shard) {
+        return shards[shard].getWakeupLagMillis();
+    }
+
+    private DefaultProcessorScheduler shardOf(long threadId) {
+        // mix the bits, as thread ids are often sequential or aligned
+        long hash = threadId * 0x9E3779B97F4A7C15L;
+        return shards[(int) ((hash >>> 32) % shards.length)];
+    }
+}
@@ -0,0 +1,52 @@
+package org.peyto.common.processor.core.schedule;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.peyto.common.processor.utils.CheckerUtils.checkArg;
+
+/**
+ * Lock, which records how long the threads wait for it and hold it. Timing costs two clock reads and
+ * two shared histogram updates, so only 1 in sampleEvery acquisitions (randomly) is timed, 0 disables timing.
+ * Nested acquisitions are not recorded
+ */
+final class TimedLock extends ReentrantLock {
+
+    private final SchedulerMetrics metrics;
+    private final int sampleEvery;
+    // guarded by the lock itself
+    private boolean holdTimed;
+    private long acquiredNanos;
+
+    TimedLock(SchedulerMetrics metrics, int sampleEvery) {
+        checkArg(sampleEvery >= 0, "Lock timing sampling shouldn't be negative, but was %d", sampleEvery);
+        this.metrics = metrics;
+        this.sampleEvery = sampleEvery;
+    }
+
+    @Override
+    public void lock() {
+        if (sampleEvery == 0 || (sampleEvery > 1 && ThreadLocalRandom.current().nextInt(sampleEvery) != 0)) {
+            super.lock();
+            if (getHoldCount() == 1) {
+                holdTimed = false;
+            }
+            return;
+        }
+        long startNanos = System.nanoTime();
+        super.lock();
+        if (getHoldCount() == 1) {
+            holdTimed = true;
+            acquiredNanos = System.nanoTime();
+            metrics.getLockWaitNanos().record(acquiredNanos - startNanos);
+        }
+    }
+
+    @Override
+    public void unlock() {
+        if (getHoldCount() == 1 && holdTimed) {
+            metrics.getLockHoldNanos().record(System.nanoTime() - acquiredNanos);
+        }
+        super.unlock();
+    }
+}
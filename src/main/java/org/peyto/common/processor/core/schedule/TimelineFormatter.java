@@ -0,0 +1,46 @@
+package org.peyto.common.processor.core.schedule;
+
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.SortedMap;
+
+class TimelineFormatter {
+
+    private TimelineFormatter() {
+    }
+
+    /**
+     * @param timeline timestamp -> (timerId -> threadId)
+     */
+    static String asLimitedString(SortedMap<Long, ? extends Map<Long, Long>> timeline, long currentTimestampMillis) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("[");
+        for (Long timestampMillis : timeline.keySet()) {
+            if (builder.length() > 80) {
+                builder.setLength(builder.length() - 2); // remove last comma
+                builder.append("...]");
+                return builder.toString();
+            }
+            long delta = timestampMillis - currentTimestampMillis;
+            if (timestampMillis == Long.MAX_VALUE) {
+                builder.append("MAX");
+            } else if (delta > 600 * 1000) { // > 10 mins
+                builder.append(delta / 60000).append("m");
+            } else if (delta > 10000) { // > 10 sec
+                builder.append(delta / 1000).append("s");
+            } else { // < 10 sec
+                builder.append(delta).append("ms");
+            }
+
+            builder.append(" : ");
+            for (Long threadId : new LinkedHashSet<>(timeline.get(timestampMillis).values())) {
+                builder.append(threadId).append(",");
+            }
+            builder.setLength(builder.length() - 1); // remove last comma
+            builder.append(", ");
+        }
+        builder.setLength(builder.length() - 2); // remove last comma
+        builder.append("]");
+        return builder.toString();
+    }
+}
@@ -0,0 +1,452 @@
+package org.peyto.common.processor.core.schedule;
+
+import org.peyto.common.processor.PeriodicMode;
+import org.peyto.common.processor.ProcessorThread;
+import org.peyto.common.processor.ProcessorTimeProvider;
+import org.peyto.common.processor.core.ConditionalOnProcessorProperty;
+import org.peyto.common.processor.core.ThreadSleeper;
+import org.peyto.common.processor.core.jfr.ProcessorEvents;
+import org.peyto.common.processor.utils.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.peyto.common.processor.utils.CheckerUtils.checkArg;
+
+/**
+ * Scheduler for large number of timers (enabled by processor.scheduler.type=timing-wheel)
+ * <p>
+ * Processor threads don't touch the timeline: they take a timer from the pool of the stripe (chosen by thread id)
+ * and append (time, timerId) to its pending buffer, so schedule() is O(1), doesn't allocate and contends only with
+ * threads of the same stripe. The timeline is a {@link HashedTimingWheel}, owned by the daemon thread, so the
+ * expiration is O(1) per timer as well.
+ * <p>
+ * Timer id encodes the stripe, the timer in the pool and its generation, so cancellation is O(1) as well: the timer
+ * is returned to the pool, and its stale entry is skipped, when the wheel reaches it. Each stripe keeps the linked
+ * list of pending timers per thread, so all the timers of the thread are purged on finish.
+ * <p>
+ * The daemon thread is pinged only when the new timer is earlier than the deadline the daemon is sleeping until.
+ * <p>
+ * Lock metrics cover the wheel lock only, stripe locks are held for O(1) and not timed.
+ */
+@Service
+@ConditionalOnProcessorProperty(name = "processor.scheduler.type", havingValue = "timing-wheel")
+public class TimingWheelProcessorScheduler implements ProcessorScheduler, SchedulerTimeline {
+
+    private static final Logger log = LoggerFactory.getLogger(TimingWheelProcessorScheduler.class);
+
+    private final ProcessorTimeProvider processorTimeProvider;
+    private final DaemonSchedulerThread daemonSchedulerThread;
+    private final NanoTimerDaemon nanoTimers;
+    private final SchedulerMetrics metrics = new SchedulerMetrics();
+
+    private final Map<Long, ProcessorThread> threadIds = new ConcurrentHashMap<>();
+
+    private final TimerStripe[] stripes;
+    private final int stripeMask;
+
+    // Guarded by wheelLock, in practice accessed by daemon thread only
+    private final TimedLock wheelLock;
+    private final HashedTimingWheel wheel;
+    private final LongPairBuffer expired = new LongPairBuffer(256);
+
+    // The deadline, which daemon thread is going to wake at. Long.MAX_VALUE if nothing is scheduled
+    private final AtomicLong earliestDeadline = new AtomicLong(Long.MAX_VALUE);
+
+    public TimingWheelProcessorScheduler(ProcessorTimeProvider processorTimeProvider,
+                                         ThreadSleeper sleeper,
+                                         @Value("#{new Boolean('${processor.scheduler.log.timeline:true}')}") boolean isLogTimeline,
+                                         @Value("${processor.scheduler.wheel.stripes:16}") int stripesCount,
+                                         @Value("${processor.scheduler.nanos.spin-micros:50}") long nanosSpinMicros,
+                                         @Value("${processor.scheduler.lock-timing.sample-every:0}") int lockTimingSampleEvery) {
+        checkArg(stripesCount > 0 && stripesCount <= TimerStripe.MAX_STRIPES && Integer.bitCount(stripesCount) == 1,
+                "Stripes count should be a power of 2 up to %d, but was %d", TimerStripe.MAX_STRIPES, stripesCount);
+        this.processorTimeProvider = processorTimeProvider;
+        this.stripes = new TimerStripe[stripesCount];
+        for (int i = 0; i < stripesCount; i++) {
+            stripes[i] = new TimerStripe(i);
+        }
+        this.stripeMask = stripesCount - 1;
+        this.wheelLock = new TimedLock(metrics, lockTimingSampleEvery);
+        this.wheel = new HashedTimingWheel(processorTimeProvider.getMillis());
+        this.daemonSchedulerThread = new DaemonSchedulerThread(this, processorTimeProvider, sleeper, isLogTimeline);
+        this.nanoTimers = new NanoTimerDaemon("processor-nano-scheduler", processorTimeProvider, threadIds::get,
+                TimeUnit.MICROSECONDS.toNanos(nanosSpinMicros));
+        daemonSchedulerThread.start();
+    }
+
+    @Override
+    public void registerThread(long uniqueThreadId, ProcessorThread thread) {
+        checkArg(!threadIds.containsKey(uniqueThreadId), "We can't have multiple threads with the same id! id = %d", uniqueThreadId);
+        threadIds.put(uniqueThreadId, thread);
+    }
+
+    @Override
+    public long schedule(long threadId, long timeMillis) {
+        long timerId = stripes[(int) threadId & stripeMask].add(threadId, timeMillis, TimerStripe.ONE_OFF);
+        if (log.isDebugEnabled()) {
+            log.debug("scheduling thread {} at {}", threadId, timeMillis);
+        }
+        lowerEarliestDeadline(timeMillis);
+        return timerId;
+    }
+
+    @Override
+    public long schedulePeriodic(long threadId, long firstTimeMillis, long periodMillis, PeriodicMode mode) {
+        checkArg(periodMillis > 0, "Period should be positive, but was %d", periodMillis);
+        long timerId = stripes[(int) threadId & stripeMask].add(threadId, firstTimeMillis,
+                mode == PeriodicMode.FIXED_RATE ? periodMillis : -periodMillis);
+        if (log.isDebugEnabled()) {
+            log.debug("scheduling thread {} at {} every {} ms", threadId, firstTimeMillis, periodMillis);
+        }
+        lowerEarliestDeadline(firstTimeMillis);
+        return timerId;
+    }
+
+    @Override
+    public long scheduleNanos(long threadId, long timeNanos) {
+        return -nanoTimers.schedule(threadId, timeNanos);
+    }
+
+    @Override
+    public LatencyHistogram getNanoWakeJitter() {
+        return nanoTimers.getWakeJitter();
+    }
+
+    @Override
+    public boolean cancel(long threadId, long timerId) {
+        if (timerId < 0) {
+            return nanoTimers.cancel(threadId, -timerId);
+        }
+        // No need to ping daemon thread, at worst it will wake additionally
+        return timerId > 0 && stripeOf(timerId).cancel(threadId, timerId);
+    }
+
+    @Override
+    public void cancelAllScheduled(long threadId) {
+        nanoTimers.cancelAll(threadId);
+        stripes[(int) threadId & stripeMask].cancelAll(threadId);
+    }
+
+    @Override
+    public void onFinish(long threadId) {
+        threadIds.remove(threadId);
+        nanoTimers.cancelAll(threadId);
+        stripes[(int) threadId & stripeMask].cancelAll(threadId);
+    }
+
+    @Override
+    public long nextWakeupTimeMillis() {
+        wheelLock.lock();
+        try {
+            long nextWakeup;
+            do {
+                drainStripes();
+                nextWakeup = wheel.nextDeadline();
+                earliestDeadline.set(nextWakeup);
+                // timers scheduled after the drain, but before publishing the deadline, might have not pinged daemon
+            } while (hasPendingTimers());
+            return nextWakeup != HashedTimingWheel.NO_DEADLINE ? nextWakeup : UNSET_TIMESTAMP;
+        } finally {
+            wheelLock.unlock();
+        }
+    }
+
+    @Override
+    public void notifyThreads(long currentMillis) {
+        Object notifyEvent = ProcessorEvents.beginNotify();
+        wheelLock.lock();
+        try {
+            drainStripes();
+            wheel.expire(currentMillis, expired);
+        } finally {
+            wheelLock.unlock();
+        }
+        long earliestExpired = Long.MAX_VALUE;
+        for (int i = 0; i < expired.size(); i++) {
+            earliestExpired = Math.min(earliestExpired, expired.first(i));
+        }
+        if (!expired.isEmpty()) {
+            metrics.getNotifyLagMillis().record(currentMillis - earliestExpired);
+        }
+        // We move notify processors out of the sync block
+        // This is executed from single thread only, no need for any additional synchronization
+        for (int i = 0; i < expired.size(); i++) {
+            // periodic timers are re-armed to the pending buffer of the stripe, the daemon drains it before sleeping
+            long threadId = stripeOf(expired.second(i)).fire(expired.second(i), expired.first(i), currentMillis);
+            ProcessorThread thread = threadId != TimerStripe.NO_THREAD ? threadIds.get(threadId) : null;
+            if (thread != null) {
+                thread.onScheduledWakeup(expired.first(i));
+            }
+        }
+        if (!expired.isEmpty()) {
+            metrics.getWakeupLagMillis().record(processorTimeProvider.getMillis() - earliestExpired);
+        }
+        if (notifyEvent != null) {
+            ProcessorEvents.commitNotify(notifyEvent, currentMillis, expired.size());
+        }
+        expired.clear();
+    }
+
+    @Override
+    public SchedulerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Timers are counted per stripe, as the wheel is owned by the daemon
+     */
+    @Override
+    public SchedulerSnapshot snapshot() {
+        long[] timersPerStripe = new long[stripes.length];
+        for (int i = 0; i < stripes.length; i++) {
+            timersPerStripe[i] = stripes[i].liveTimers();
+        }
+        long earliest = earliestDeadline.get();
+        return new SchedulerSnapshot(timersPerStripe, earliest != Long.MAX_VALUE ? earliest : UNSET_TIMESTAMP);
+    }
+
+    @Override
+    public String timelineAsLimitedString(long currentTimestampMillis) {
+        LongPairBuffer timers = new LongPairBuffer(64);
+        wheelLock.lock();
+        try {
+            drainStripes();
+            wheel.copyTo(timers);
+        } finally {
+            wheelLock.unlock();
+        }
+        SortedMap<Long, LinkedHashMap<Long, Long>> timeline = new TreeMap<>();
+        for (int i = 0; i < timers.size(); i++) {
+            long threadId = stripeOf(timers.second(i)).threadOf(timers.second(i));
+            if (threadId != TimerStripe.NO_THREAD) {
+                timeline.computeIfAbsent(timers.first(i), aLong -> new LinkedHashMap<>()).put(timers.second(i), threadId);
+            }
+        }
+        return TimelineFormatter.asLimitedString(timeline, currentTimestampMillis);
+    }
+
+    private void lowerEarliestDeadline(long timeMillis) {
+        // Stripe is written before reading the deadline, while daemon publishes the deadline before draining stripes.
+        // So either we see the deadline, which daemon is sleeping till, or daemon sees our timer
+        long earliest;
+        while (timeMillis < (earliest = earliestDeadline.get())) {
+            if (earliestDeadline.compareAndSet(earliest, timeMillis)) {
+                daemonSchedulerThread.pingToRecalculate();
+                break;
+            }
+        }
+    }
+
+    private void drainStripes() {
+        wheel.moveCursorIfEmpty(processorTimeProvider.getMillis());
+        for (TimerStripe stripe : stripes) {
+            LongPairBuffer pending = stripe.takePending();
+            if (pending != null) {
+                for (int i = 0; i < pending.size(); i++) {
+                    wheel.add(pending.first(i), pending.second(i));
+                }
+                pending.clear();
+            }
+        }
+    }
+
+    private boolean hasPendingTimers() {
+        for (TimerStripe stripe : stripes) {
+            if (stripe.hasPending()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private TimerStripe stripeOf(long timerId) {
+        return stripes[TimerStripe.stripeIndexOf(timerId)];
+    }
+
+    /**
+     * Pool of timers of the threads, hashed to the stripe, with linked list of pending timers per thread.
+     * Also timers, which were scheduled by processor threads, but not moved to the wheel yet. They are double
+     * buffered, so the daemon doesn't hold the stripe lock while moving timers to the wheel.
+     * <p>
+     * Timer id: generation (bits 40-62) | stripe index (bits 32-39) | timer index in the pool (bits 0-31)
+     */
+    private static final class TimerStripe {
+
+        static final int MAX_STRIPES = 256;
+        static final long NO_THREAD = Long.MIN_VALUE;
+        // period of one-off timers, positive period is fixed rate, negative is fixed delay
+        static final long ONE_OFF = 0;
+
+        private static final int NO_TIMER = LongIntHashMap.MISSING_VALUE;
+        private static final int GENERATION_SHIFT = 40;
+        private static final int GENERATION_MASK = (1 << 23) - 1;
+        private static final int STRIPE_SHIFT = 32;
+
+        private final long stripeBits;
+
+        private long[] threadIds = new long[64];
+        private long[] periods = new long[64];
+        private int[] generations = new int[64];
+        private int[] nextTimers = new int[64];
+        private int[] previousTimers = new int[64];
+        private int allocatedTimers = 0;
+        private int freeTimer = NO_TIMER;
+        private int liveTimers = 0;
+        // threadId -> first pending timer of the thread
+        private final LongIntHashMap threadTimers = new LongIntHashMap(64);
+
+        private LongPairBuffer pending = new LongPairBuffer(64);
+        private LongPairBuffer draining = new LongPairBuffer(64);
+
+        TimerStripe(int stripeIndex) {
+            this.stripeBits = (long) stripeIndex << STRIPE_SHIFT;
+        }
+
+        static int stripeIndexOf(long timerId) {
+            return (int) (timerId >>> STRIPE_SHIFT) & (MAX_STRIPES - 1);
+        }
+
+        synchronized long add(long threadId, long timeMillis, long period) {
+            int timer = allocate();
+            threadIds[timer] = threadId;
+            periods[timer] = period;
+            int head = threadTimers.get(threadId);
+            previousTimers[timer] = NO_TIMER;
+            nextTimers[timer] = head;
+            if (head != NO_TIMER) {
+                previousTimers[head] = timer;
+            }
+            threadTimers.put(threadId, timer);
+            long timerId = ((long) generations[timer] << GENERATION_SHIFT) | stripeBits | timer;
+            pending.add(timeMillis, timerId);
+            return timerId;
+        }
+
+        synchronized boolean cancel(long threadId, long timerId) {
+            int timer = liveTimer(timerId);
+            if (timer == NO_TIMER || threadIds[timer] != threadId) {
+                return false;
+            }
+            release(timer);
+            return true;
+        }
+
+        synchronized void cancelAll(long threadId) {
+            int timer = threadTimers.remove(threadId);
+            while (timer != NO_TIMER) {
+                int next = nextTimers[timer];
+                free(timer);
+                timer = next;
+            }
+        }
+
+        /**
+         * Release the expired timer or re-arm it, if it's periodic
+         *
+         * @return thread of the expired timer or {@link #NO_THREAD}, if the timer was cancelled
+         */
+        synchronized long fire(long timerId, long deadlineMillis, long currentMillis) {
+            int timer = liveTimer(timerId);
+            if (timer == NO_TIMER) {
+                return NO_THREAD;
+            }
+            long threadId = threadIds[timer];
+            long period = periods[timer];
+            if (period == ONE_OFF) {
+                release(timer);
+            } else {
+                pending.add(ProcessorScheduler.nextPeriodicTime(deadlineMillis, currentMillis, Math.abs(period),
+                        period > 0 ? PeriodicMode.FIXED_RATE : PeriodicMode.FIXED_DELAY), timerId);
+            }
+            return threadId;
+        }
+
+        synchronized long threadOf(long timerId) {
+            int timer = liveTimer(timerId);
+            return timer != NO_TIMER ? threadIds[timer] : NO_THREAD;
+        }
+
+        synchronized int liveTimers() {
+            return liveTimers;
+        }
+
+        synchronized boolean hasPending() {
+            return !pending.isEmpty();
+        }
+
+        /**
+         * The returned buffer should be cleared by the caller before the next call
+         */
+        synchronized LongPairBuffer takePending() {
+            if (pending.isEmpty()) {
+                return null;
+            }
+            LongPairBuffer taken = pending;
+            pending = draining;
+            draining = taken;
+            return taken;
+        }
+
+        private int liveTimer(long timerId) {
+            int timer = (int) timerId;
+            if (timer < 0 || timer >= allocatedTimers || generations[timer] != (int) (timerId >>> GENERATION_SHIFT)) {
+                return NO_TIMER;
+            }
+            return timer;
+        }
+
+        private int allocate() {
+            liveTimers++;
+            if (freeTimer != NO_TIMER) {
+                int timer = freeTimer;
+                freeTimer = nextTimers[timer];
+                return timer;
+            }
+            if (allocatedTimers == threadIds.length) {
+                int newCapacity = allocatedTimers << 1;
+                threadIds = Arrays.copyOf(threadIds, newCapacity);
+                periods = Arrays.copyOf(periods, newCapacity);
+                generations = Arrays.copyOf(generations, newCapacity);
+                nextTimers = Arrays.copyOf(nextTimers, newCapacity);
+                previousTimers = Arrays.copyOf(previousTimers, newCapacity);
+            }
+            generations[allocatedTimers] = 1;
+            return allocatedTimers++;
+        }
+
+        private void release(int timer) {
+            int previous = previousTimers[timer];
+            int next = nextTimers[timer];
+            if (next != NO_TIMER) {
+                previousTimers[next] = previous;
+            }
+            if (previous != NO_TIMER) {
+                nextTimers[previous] = next;
+            } else if (next != NO_TIMER) {
+                threadTimers.put(threadIds[timer], next);
+            } else {
+                threadTimers.remove(threadIds[timer]);
+            }
+            free(timer);
+        }
+
+        private void free(int timer) {
+            // new generation makes ids of the released timer stale
+            generations[timer] = generations[timer] == GENERATION_MASK ? 1 : generations[timer] + 1;
+            liveTimers--;
+            nextTimers[timer] = freeTimer;
+            freeTimer = timer;
+        }
+    }
+}
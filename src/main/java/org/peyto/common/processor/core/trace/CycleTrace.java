@@ -0,0 +1,118 @@
+package org.peyto.common.processor.core.trace;
+
+import org.peyto.common.processor.ProcessorResult;
+
+/**
+ * Sampled record of a single processor cycle: what has woken the processor and where the time has gone
+ * (queue, scheduler or process() itself)
+ */
+public final class CycleTrace {
+
+    public enum WakeReason {
+        // input was offered to the processor, see inputIndex
+        INPUT,
+        // scheduled wakeup has expired, see scheduledWakeMillis. Nano timers are TIMER as well, their deadline
+        // is converted to the cycle time clock, so the sub-millisecond part of the lag is lost
+        TIMER,
+        // processor was woken without the input index (ring and broadcast inputs)
+        SIGNAL,
+        // cycle was re-run without a signal, because the previous one was BUSY (or it's the first cycle)
+        BUSY
+    }
+
+    public static final long UNKNOWN = -1;
+
+    private final long threadId;
+    private final long cycleNumber;
+    private final WakeReason wakeReason;
+    private final int inputIndex;
+    private final long scheduledWakeMillis;
+    private final long cycleTimeMillis;
+    private final long signalToCycleNanos;
+    private final long oldestInputWaitNanos;
+    private final long durationNanos;
+    private final ProcessorResult result;
+
+    public CycleTrace(long threadId, long cycleNumber, WakeReason wakeReason, int inputIndex, long scheduledWakeMillis,
+                      long cycleTimeMillis, long signalToCycleNanos, long oldestInputWaitNanos, long durationNanos,
+                      ProcessorResult result) {
+        this.threadId = threadId;
+        this.cycleNumber = cycleNumber;
+        this.wakeReason = wakeReason;
+        this.inputIndex = inputIndex;
+        this.scheduledWakeMillis = scheduledWakeMillis;
+        this.cycleTimeMillis = cycleTimeMillis;
+        this.signalToCycleNanos = signalToCycleNanos;
+        this.oldestInputWaitNanos = oldestInputWaitNanos;
+        this.durationNanos = durationNanos;
+        this.result = result;
+    }
+
+    public static String csvHeader() {
+        return "threadId,cycleNumber,wakeReason,inputIndex,scheduledWakeMillis,cycleTimeMillis,signalToCycleNanos,"
+                + "oldestInputWaitNanos,durationNanos,result";
+    }
+
+    public String toCsv() {
+        return threadId + "," + cycleNumber + "," + wakeReason + "," + inputIndex + "," + scheduledWakeMillis + ","
+                + cycleTimeMillis + "," + signalToCycleNanos + "," + oldestInputWaitNanos + "," + durationNanos + "," + result;
+    }
+
+    public long getThreadId() {
+        return threadId;
+    }
+
+    public long getCycleNumber() {
+        return cycleNumber;
+    }
+
+    public WakeReason getWakeReason() {
+        return wakeReason;
+    }
+
+    /**
+     * @return index of the input, which has woken the processor, {@link #UNKNOWN} if the reason is not INPUT
+     */
+    public int getInputIndex() {
+        return inputIndex;
+    }
+
+    /**
+     * @return deadline of the expired wakeup, {@link #UNKNOWN} if the reason is not TIMER.
+     * Compare with cycleTimeMillis to get the scheduler lag
+     */
+    public long getScheduledWakeMillis() {
+        return scheduledWakeMillis;
+    }
+
+    public long getCycleTimeMillis() {
+        return cycleTimeMillis;
+    }
+
+    /**
+     * @return time between the signal and the start of the cycle, {@link #UNKNOWN} for BUSY re-runs
+     */
+    public long getSignalToCycleNanos() {
+        return signalToCycleNanos;
+    }
+
+    /**
+     * @return queue wait of the oldest input consumed by the cycle, {@link #UNKNOWN} if no unbounded input was consumed
+     */
+    public long getOldestInputWaitNanos() {
+        return oldestInputWaitNanos;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public ProcessorResult getResult() {
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "CycleTrace{" + toCsv() + '}';
+    }
+}
@@ -0,0 +1,84 @@
+package org.peyto.common.processor.core.trace;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free ring of the last traces of a single processor. Written by the thread running the processor only,
+ * the oldest traces are overwritten. Traces are immutable, so readers never see a partially written one
+ */
+public final class CycleTraceBuffer {
+
+    private final long threadId;
+    private final String processorName;
+    private final int sampleEvery;
+    private final AtomicReferenceArray<CycleTrace> traces;
+    private final int mask;
+    // sequence of the next trace, published after the trace is stored
+    private final AtomicLong published = new AtomicLong();
+
+    // owned by the writer
+    private long cycles = 0;
+
+    CycleTraceBuffer(long threadId, String processorName, int capacity, int sampleEvery) {
+        this.threadId = threadId;
+        this.processorName = processorName;
+        this.sampleEvery = sampleEvery;
+        this.traces = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Called once per cycle by the writer
+     *
+     * @return true if the cycle should be traced
+     */
+    public boolean sample() {
+        return cycles++ % sampleEvery == 0;
+    }
+
+    public void record(CycleTrace trace) {
+        long sequence = published.get();
+        traces.lazySet((int) sequence & mask, trace);
+        published.lazySet(sequence + 1);
+    }
+
+    public long getThreadId() {
+        return threadId;
+    }
+
+    public String getProcessorName() {
+        return processorName;
+    }
+
+    /**
+     * @return the last traces, the oldest first
+     */
+    public List<CycleTrace> snapshot() {
+        List<CycleTrace> result = new ArrayList<>();
+        readFrom(0, result);
+        return result;
+    }
+
+    /**
+     * Collect traces published since the sequence, which are not overwritten yet
+     *
+     * @return sequence of the next trace after the collected ones, to continue reading from
+     */
+    public long readFrom(long sequence, List<CycleTrace> result) {
+        long end = published.get();
+        // the oldest slot might be being overwritten by the next trace
+        long start = Math.max(sequence, end - traces.length() + 1);
+        for (long i = start; i < end; i++) {
+            CycleTrace trace = traces.get((int) i & mask);
+            // overwritten by the writer while reading
+            if (published.get() - i >= traces.length()) {
+                continue;
+            }
+            result.add(trace);
+        }
+        return end;
+    }
+}
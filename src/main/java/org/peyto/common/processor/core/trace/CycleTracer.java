@@ -0,0 +1,175 @@
+package org.peyto.common.processor.core.trace;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.peyto.common.processor.utils.CheckerUtils.checkArg;
+
+/**
+ * Cycle causality tracing (enabled by processor.trace.sample-every, every Nth cycle of each processor is traced).
+ * Each processor keeps its last traces in {@link CycleTraceBuffer}, which can be dumped on demand. If
+ * processor.trace.file is set, the traces are also appended to the file as CSV by the writer thread every
+ * processor.trace.flush-millis. Traces overwritten before the writer has read them are counted as lost.
+ */
+@Service
+public class CycleTracer implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(CycleTracer.class);
+
+    private final int sampleEvery;
+    private final int bufferSize;
+    private final long flushNanos;
+    private final Thread writerThread;
+
+    private final Map<Long, CycleTraceBuffer> buffers = new ConcurrentHashMap<>();
+    // finished processors, which are written by the writer for the last time
+    private final ConcurrentLinkedQueue<CycleTraceBuffer> finishedBuffers = new ConcurrentLinkedQueue<>();
+
+    // owned by the writer thread
+    private final Map<CycleTraceBuffer, Long> writtenSequences = new HashMap<>();
+    // written by the writer thread only
+    private volatile long lostTraces = 0;
+
+    private volatile boolean running = true;
+
+    public CycleTracer(@Value("${processor.trace.sample-every:0}") int sampleEvery,
+                       @Value("${processor.trace.buffer-size:1024}") int bufferSize,
+                       @Value("${processor.trace.file:}") String file,
+                       @Value("${processor.trace.flush-millis:1000}") long flushMillis) {
+        checkArg(sampleEvery >= 0, "Trace sampling shouldn't be negative, but was %d", sampleEvery);
+        checkArg(bufferSize > 1 && Integer.bitCount(bufferSize) == 1, "Trace buffer size should be a power of 2, but was %d", bufferSize);
+        checkArg(flushMillis > 0, "Trace flush interval should be positive, but was %d", flushMillis);
+        this.sampleEvery = sampleEvery;
+        this.bufferSize = bufferSize;
+        this.flushNanos = TimeUnit.MILLISECONDS.toNanos(flushMillis);
+        if (sampleEvery > 0 && !file.isEmpty()) {
+            this.writerThread = new Thread(() -> stream(file), "processor-trace-writer");
+            writerThread.setDaemon(true);
+            writerThread.start();
+        } else {
+            this.writerThread = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return sampleEvery > 0;
+    }
+
+    /**
+     * @return buffer the processor records its traces to, or null if tracing is disabled
+     */
+    public CycleTraceBuffer track(long threadId, String processorName) {
+        if (!isEnabled()) {
+            return null;
+        }
+        CycleTraceBuffer buffer = new CycleTraceBuffer(threadId, processorName, bufferSize, sampleEvery);
+        buffers.put(threadId, buffer);
+        return buffer;
+    }
+
+    public void untrack(long threadId) {
+        CycleTraceBuffer buffer = buffers.remove(threadId);
+        if (buffer != null && writerThread != null) {
+            finishedBuffers.add(buffer);
+        }
+    }
+
+    /**
+     * @return the last traces of the running processor, the oldest first
+     */
+    public List<CycleTrace> getTraces(long threadId) {
+        CycleTraceBuffer buffer = buffers.get(threadId);
+        return buffer != null ? buffer.snapshot() : Collections.emptyList();
+    }
+
+    /**
+     * Write the last traces of all the running processors as CSV
+     */
+    public void dump(Writer writer) throws IOException {
+        writer.write(CycleTrace.csvHeader());
+        writer.write('\n');
+        for (CycleTraceBuffer buffer : buffers.values()) {
+            for (CycleTrace trace : buffer.snapshot()) {
+                writer.write(trace.toCsv());
+                writer.write('\n');
+            }
+        }
+        writer.flush();
+    }
+
+    @Override
+    public void destroy() {
+        running = false;
+        if (writerThread != null) {
+            LockSupport.unpark(writerThread);
+        }
+    }
+
+    private void stream(String file) {
+        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.write(CycleTrace.csvHeader());
+            writer.write('\n');
+            while (running) {
+                LockSupport.parkNanos(this, flushNanos);
+                writeNewTraces(writer);
+            }
+            writeNewTraces(writer);
+        } catch (IOException e) {
+            log.error("Processor traces can't be written to {}, streaming is stopped", file, e);
+        }
+    }
+
+    private void writeNewTraces(Writer writer) throws IOException {
+        List<CycleTrace> traces = new ArrayList<>();
+        for (CycleTraceBuffer buffer : buffers.values()) {
+            readNewTraces(buffer, traces);
+        }
+        CycleTraceBuffer finished;
+        while ((finished = finishedBuffers.poll()) != null) {
+            readNewTraces(finished, traces);
+            writtenSequences.remove(finished);
+        }
+        for (CycleTrace trace : traces) {
+            writer.write(trace.toCsv());
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    private void readNewTraces(CycleTraceBuffer buffer, List<CycleTrace> traces) {
+        long written = writtenSequences.getOrDefault(buffer, 0L);
+        int before = traces.size();
+        long end = buffer.readFrom(written, traces);
+        // traces, which were published since the last write, but are not in the ring anymore
+        lostTraces += (end - written) - (traces.size() - before);
+        writtenSequences.put(buffer, end);
+    }
+
+    /**
+     * @return number of traces overwritten before the writer thread has read them
+     */
+    public long getLostTraces() {
+        return lostTraces;
+    }
+}
@@ -0,0 +1,82 @@
+package org.peyto.common.processor.metrics;
+
+import org.peyto.common.processor.ProcessorResult;
+import org.peyto.common.processor.Receiver;
+
+/**
+ * Metrics of a single processor. Record methods are called by the processor thread (or the pool thread running
+ * the processor cycle), so the implementation is on the hot path and shouldn't lock or allocate
+ */
+public interface ProcessorMetrics {
+
+    ProcessorMetrics NOOP = new ProcessorMetrics() {
+
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+
+        @Override
+        public void onInputRegistered(int index, Receiver<?> receiver) {
+        }
+
+        @Override
+        public void recordCycle(ProcessorResult result, long durationNanos) {
+        }
+
+        @Override
+        public void recordException() {
+        }
+
+        @Override
+        public void recordWakeLatency(long latencyNanos) {
+        }
+
+        @Override
+        public void recordInputLatency(int index, long latencyNanos) {
+        }
+    };
+
+    /**
+     * If false, the framework doesn't even measure the time of cycles and inputs
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * Called once per input, when the processor is being created. The receiver can be used to read the queue depth
+     * from other threads
+     */
+    void onInputRegistered(int index, Receiver<?> receiver);
+
+    /**
+     * Called by the framework instead of {@link #onInputRegistered(int, Receiver)}, so the metrics can tell the input
+     * without latency from the idle one. The default ignores the flag, so existing implementations keep compiling
+     *
+     * @param latencyRecorded if {@link #recordInputLatency} is called for the input. Only unbounded inputs stamp
+     *                        the offer time, bounded, conflating, ring and broadcast inputs report the queue depth only
+     */
+    default void onInputRegistered(int index, Receiver<?> receiver, boolean latencyRecorded) {
+        onInputRegistered(index, receiver);
+    }
+
+    void recordCycle(ProcessorResult result, long durationNanos);
+
+    /**
+     * Processor cycle has thrown the exception (the cycle itself is recorded as BUSY)
+     */
+    void recordException();
+
+    /**
+     * Time between the processor was signalled (input or scheduled wakeup) and the start of the cycle, which
+     * handles the signal. Only the first signal is timed, signals are coalesced while the processor is waking
+     */
+    void recordWakeLatency(long latencyNanos);
+
+    /**
+     * Time between the input was offered and received by the processor. Recorded for unbounded inputs only,
+     * see latencyRecorded of {@link #onInputRegistered(int, Receiver, boolean)}
+     */
+    void recordInputLatency(int index, long latencyNanos);
+}
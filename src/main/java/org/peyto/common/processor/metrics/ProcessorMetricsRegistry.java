@@ -0,0 +1,32 @@
+package org.peyto.common.processor.metrics;
+
+/**
+ * SPI of processor metrics, e.g. to export them to the monitoring system.
+ * The framework provides in-memory registry (processor.metrics.type=in-memory, default) and no-op one
+ * (processor.metrics.type=none). Custom registry bean can be used with any other value of processor.metrics.type
+ */
+public interface ProcessorMetricsRegistry {
+
+    ProcessorMetricsRegistry NOOP = new ProcessorMetricsRegistry() {
+
+        @Override
+        public ProcessorMetrics register(long threadId, String processorName) {
+            return ProcessorMetrics.NOOP;
+        }
+
+        @Override
+        public void unregister(long threadId) {
+        }
+    };
+
+    /**
+     * Called when the processor is created
+     * @return metrics the processor will record to
+     */
+    ProcessorMetrics register(long threadId, String processorName);
+
+    /**
+     * Called when the processor has finished
+     */
+    void unregister(long threadId);
+}
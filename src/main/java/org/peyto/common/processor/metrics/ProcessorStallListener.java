@@ -0,0 +1,15 @@
+package org.peyto.common.processor.metrics;
+
+/**
+ * Notified by the stall watchdog (processor.watchdog.budget-millis) about the processor cycle, which is running
+ * longer than the budget. Called from the watchdog thread, at most once per sample interval per processor
+ */
+@FunctionalInterface
+public interface ProcessorStallListener {
+
+    /**
+     * @param stalledMillis how long the cycle has been running so far
+     * @param stackTrace sampled stack of the thread running the cycle
+     */
+    void onStall(long threadId, String processorName, long stalledMillis, StackTraceElement[] stackTrace);
+}
@@ -1,11 +1,13 @@
 package org.peyto.common.processor.simulation;
 
+import org.peyto.common.processor.PeriodicMode;
 import org.peyto.common.processor.ProcessorThreadListener;
 import org.peyto.common.processor.ProcessorTimeProvider;
 import org.peyto.common.processor.core.InternalProcessorContext;
 import org.peyto.common.processor.utils.CheckerUtils;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class SimulationContext implements InternalProcessorContext, ProcessorTimeProvider, ProcessorThreadListener {
@@ -59,7 +61,40 @@ public class SimulationContext implements InternalProcessorContext, ProcessorTim
     }
 
     @Override
-    public void scheduleWakeup(long timeMillis) {
+    public long scheduleWakeup(long timeMillis) {
+        // cycles are replayed from the recorded data, nothing to wake
+        return 0;
+    }
+
+    @Override
+    public long scheduleWakeup(long timeMillis, long slackMillis) {
+        return 0;
+    }
+
+    @Override
+    public long schedulePeriodic(long periodMillis, PeriodicMode mode) {
+        return 0;
+    }
+
+    @Override
+    public long scheduleWakeupNanos(long timeNanos) {
+        return 0;
+    }
+
+    @Override
+    public long getNanos() {
+        return currentTimeNanos();
+    }
+
+    @Override
+    public long currentTimeNanos() {
+        // replay is deterministic, so nanos are derived from the recorded cycle time
+        return TimeUnit.MILLISECONDS.toNanos(getCycleTimeMillis());
+    }
+
+    @Override
+    public boolean cancelWakeup(long wakeupId) {
+        return false;
     }
 
     @Override
@@ -0,0 +1,98 @@
+package org.peyto.common.processor.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of non-negative values (e.g. latencies in nanos) with power of 2 buckets, so recording is
+ * a couple of atomic increments without allocation. Percentiles are approximate: they return the upper bound
+ * of the bucket, so the error is below 2x
+ */
+public final class LatencyHistogram {
+
+    private static final int BUCKETS = Long.SIZE;
+
+    // bucket i counts values in [2^(i-1), 2^i), bucket 0 counts zeros
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+        long nonNegative = Math.max(0, value);
+        buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(nonNegative));
+        count.incrementAndGet();
+        sum.addAndGet(nonNegative);
+        long currentMax;
+        while (nonNegative > (currentMax = max.get()) && !max.compareAndSet(currentMax, nonNegative)) {
+            // retry
+        }
+    }
+
+    /**
+     * Add all the values of other histogram, e.g. to aggregate histograms of shards
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.addAndGet(i, other.buckets.get(i));
+        }
+        count.addAndGet(other.count.get());
+        sum.addAndGet(other.sum.get());
+        long otherMax = other.getMax();
+        long currentMax;
+        while (otherMax > (currentMax = max.get()) && !max.compareAndSet(currentMax, otherMax)) {
+            // retry
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long currentCount = count.get();
+        return currentCount == 0 ? 0 : (double) sum.get() / currentCount;
+    }
+
+    /**
+     * @param percentile in range (0, 100]
+     * @return upper bound of the bucket, which contains the percentile, but not more than the max value
+     */
+    public long getValueAtPercentile(double percentile) {
+        CheckerUtils.checkArg(percentile > 0 && percentile <= 100, "Percentile should be in (0, 100], but was %s", percentile);
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank && seen > 0) {
+                return i == 0 ? 0 : Math.min(i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << i) - 1, getMax());
+            }
+        }
+        return 0;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d, mean=%.1f, p50=%d, p99=%d, p99.9=%d, max=%d", getCount(), getMean(),
+                getValueAtPercentile(50), getValueAtPercentile(99), getValueAtPercentile(99.9), getMax());
+    }
+}
@@ -0,0 +1,30 @@
+package org.peyto.common.processor.core.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+@Name("org.peyto.processor.Cycle")
+@Label("Processor Cycle")
+@Description("Processor.process call")
+@Category("Processor Framework")
+@Enabled(false)
+@Threshold("1 ms")
+class CycleEvent extends Event {
+
+    @Label("Processor Thread Id")
+    long threadId;
+
+    @Label("Cycle Number")
+    long cycleNumber;
+
+    @Label("Result")
+    String result;
+
+    @Label("Queued Inputs")
+    int queuedInputs;
+}
@@ -0,0 +1,22 @@
+package org.peyto.common.processor.core.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.peyto.processor.InputOffered")
+@Label("Input Offered")
+@Description("Input enqueued to the processor")
+@Category("Processor Framework")
+@Enabled(false)
+class InputOfferedEvent extends Event {
+
+    @Label("Processor Thread Id")
+    long threadId;
+
+    @Label("Input Index")
+    int index;
+}
@@ -0,0 +1,24 @@
+package org.peyto.common.processor.core.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+@Name("org.peyto.processor.NotifyThreads")
+@Label("Notify Threads")
+@Description("Fan-out of the expired wakeups to processor threads")
+@Category("Processor Framework")
+@Enabled(false)
+@Threshold("1 ms")
+class NotifyThreadsEvent extends Event {
+
+    @Label("Current Time")
+    long currentMillis;
+
+    @Label("Threads Count")
+    int threadsCount;
+}
@@ -0,0 +1,99 @@
+package org.peyto.common.processor.core.jfr;
+
+import jdk.jfr.EventType;
+import org.peyto.common.processor.ProcessorResult;
+
+/**
+ * JDK 11+ version of the class, packaged to META-INF/versions/11 of the multi-release jar.
+ * Event objects are not allocated, when the event is disabled (escape analysis removes them)
+ */
+public final class ProcessorEvents {
+
+    // checked before the allocation, as the offers and wakeups are recorded by all the threads (not inlined into
+    // a single hot loop, so escape analysis doesn't always remove the disabled event)
+    private static final EventType INPUT_OFFERED = EventType.getEventType(InputOfferedEvent.class);
+    private static final EventType WAKEUP_SCHEDULED = EventType.getEventType(WakeupScheduledEvent.class);
+
+    private ProcessorEvents() {
+    }
+
+    public static Object beginCycle() {
+        CycleEvent event = new CycleEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    public static void commitCycle(Object cycleEvent, long threadId, long cycleNumber, ProcessorResult result, int queuedInputs) {
+        CycleEvent event = (CycleEvent) cycleEvent;
+        event.end();
+        if (event.shouldCommit()) {
+            event.threadId = threadId;
+            event.cycleNumber = cycleNumber;
+            event.result = result.name();
+            event.queuedInputs = queuedInputs;
+            event.commit();
+        }
+    }
+
+    public static void inputOffered(long threadId, int index) {
+        if (!INPUT_OFFERED.isEnabled()) {
+            return;
+        }
+        InputOfferedEvent event = new InputOfferedEvent();
+        event.threadId = threadId;
+        event.index = index;
+        event.commit();
+    }
+
+    public static void processorException(long threadId, Exception exception) {
+        ProcessorExceptionEvent event = new ProcessorExceptionEvent();
+        if (event.isEnabled()) {
+            event.threadId = threadId;
+            event.exceptionClass = exception.getClass();
+            event.message = exception.getMessage();
+            event.commit();
+        }
+    }
+
+    public static void wakeupScheduled(long threadId, long timeMillis, long timerId) {
+        if (!WAKEUP_SCHEDULED.isEnabled()) {
+            return;
+        }
+        WakeupScheduledEvent event = new WakeupScheduledEvent();
+        event.threadId = threadId;
+        event.timeMillis = timeMillis;
+        event.timerId = timerId;
+        event.commit();
+    }
+
+    public static void schedulerTick(long currentMillis, long nextWakeupMillis) {
+        SchedulerTickEvent event = new SchedulerTickEvent();
+        if (event.isEnabled()) {
+            event.currentMillis = currentMillis;
+            event.nextWakeupMillis = nextWakeupMillis;
+            event.commit();
+        }
+    }
+
+    public static Object beginNotify() {
+        NotifyThreadsEvent event = new NotifyThreadsEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    public static void commitNotify(Object notifyEvent, long currentMillis, int threadsCount) {
+        NotifyThreadsEvent event = (NotifyThreadsEvent) notifyEvent;
+        event.end();
+        if (event.shouldCommit()) {
+            event.currentMillis = currentMillis;
+            event.threadsCount = threadsCount;
+            event.commit();
+        }
+    }
+}
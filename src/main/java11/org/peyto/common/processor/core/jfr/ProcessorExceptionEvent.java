@@ -0,0 +1,25 @@
+package org.peyto.common.processor.core.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.peyto.processor.ProcessorException")
+@Label("Processor Exception")
+@Description("Exception thrown by the processor cycle")
+@Category("Processor Framework")
+@Enabled(false)
+class ProcessorExceptionEvent extends Event {
+
+    @Label("Processor Thread Id")
+    long threadId;
+
+    @Label("Exception Class")
+    Class<?> exceptionClass;
+
+    @Label("Message")
+    String message;
+}
@@ -0,0 +1,22 @@
+package org.peyto.common.processor.core.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.peyto.processor.SchedulerTick")
+@Label("Scheduler Tick")
+@Description("Iteration of the scheduler daemon thread")
+@Category("Processor Framework")
+@Enabled(false)
+class SchedulerTickEvent extends Event {
+
+    @Label("Current Time")
+    long currentMillis;
+
+    @Label("Next Wakeup Time")
+    long nextWakeupMillis;
+}
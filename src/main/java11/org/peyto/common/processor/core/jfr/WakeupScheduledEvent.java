@@ -0,0 +1,25 @@
+package org.peyto.common.processor.core.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.peyto.processor.WakeupScheduled")
+@Label("Wakeup Scheduled")
+@Description("Processor has scheduled a wakeup")
+@Category("Processor Framework")
+@Enabled(false)
+class WakeupScheduledEvent extends Event {
+
+    @Label("Processor Thread Id")
+    long threadId;
+
+    @Label("Wakeup Time")
+    long timeMillis;
+
+    @Label("Timer Id")
+    long timerId;
+}
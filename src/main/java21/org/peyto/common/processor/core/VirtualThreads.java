@@ -0,0 +1,20 @@
+package org.peyto.common.processor.core;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * JDK 21+ version of the class, packaged to META-INF/versions/21 of the multi-release jar
+ */
+final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    static boolean isSupported() {
+        return true;
+    }
+
+    static ThreadFactory factory() {
+        return Thread.ofVirtual().factory();
+    }
+}
@@ -0,0 +1,21 @@
+package org.peyto.common.processor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class IdleStrategyTest {
+
+    @Test
+    public void backoff() {
+        IdleStrategy backoff = IdleStrategy.backoff(2, 1, 1_000, 10_000);
+        assertEquals(0, backoff.idle(0));
+        assertEquals(0, backoff.idle(1));
+        assertEquals(0, backoff.idle(2));
+        assertEquals(1_000, backoff.idle(3));
+        assertEquals(2_000, backoff.idle(4));
+        assertEquals(8_000, backoff.idle(6));
+        assertEquals(10_000, backoff.idle(7));
+        assertEquals(10_000, backoff.idle(Integer.MAX_VALUE - 3));
+    }
+}
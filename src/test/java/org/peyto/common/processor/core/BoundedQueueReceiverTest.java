@@ -0,0 +1,98 @@
+package org.peyto.common.processor.core;
+
+import org.junit.Test;
+import org.peyto.common.processor.BackpressurePolicy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BoundedQueueReceiverTest {
+
+    @Test
+    public void dropOldest() {
+        BoundedQueueReceiver<Integer> receiver = fill(BackpressurePolicy.DROP_OLDEST, 3, 5);
+        assertEquals(Arrays.asList(3, 4, 5), drain(receiver));
+        assertEquals(2, receiver.getDroppedCount());
+    }
+
+    @Test
+    public void dropNewest() {
+        BoundedQueueReceiver<Integer> receiver = fill(BackpressurePolicy.DROP_NEWEST, 3, 5);
+        assertEquals(Arrays.asList(1, 2, 3), drain(receiver));
+        assertEquals(2, receiver.getDroppedCount());
+    }
+
+    @Test
+    public void reject() {
+        BoundedQueueReceiver<Integer> receiver = fill(BackpressurePolicy.REJECT, 3, 3);
+        try {
+            receiver.offer(4);
+            fail("Full input should reject");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals(1, receiver.getRejectedCount());
+        assertEquals(Arrays.asList(1, 2, 3), drain(receiver));
+    }
+
+    @Test
+    public void blockProducer() throws InterruptedException {
+        BoundedQueueReceiver<Integer> receiver = fill(BackpressurePolicy.BLOCK_PRODUCER, 2, 2);
+        CountDownLatch offered = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            receiver.offer(3);
+            offered.countDown();
+        });
+        producer.start();
+        while (receiver.getBlockedCount() == 0) {
+            Thread.yield();
+        }
+        assertEquals(1, offered.getCount());
+        assertEquals(Integer.valueOf(1), receiver.receive());
+        offered.await();
+        producer.join();
+        assertEquals(Arrays.asList(2, 3), drain(receiver));
+        assertTrue(receiver.getBlockedTimeNanos() > 0);
+    }
+
+    @Test
+    public void failedConsumerReturnsRestToHead() {
+        BoundedQueueReceiver<Integer> receiver = fill(BackpressurePolicy.DROP_NEWEST, 4, 4);
+        List<Integer> consumed = new ArrayList<>();
+        try {
+            receiver.drainTo(obj -> {
+                consumed.add(obj);
+                if (obj == 2) {
+                    throw new IllegalStateException("consumer failed");
+                }
+            }, Integer.MAX_VALUE);
+            fail("Consumer exception should be propagated");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        receiver.offer(5);
+        assertEquals(Arrays.asList(1, 2), consumed);
+        assertEquals(Arrays.asList(3, 4, 5), drain(receiver));
+        assertEquals(0, receiver.getDroppedCount());
+    }
+
+    private static BoundedQueueReceiver<Integer> fill(BackpressurePolicy policy, int capacity, int count) {
+        BoundedQueueReceiver<Integer> receiver = new BoundedQueueReceiver<>(capacity, policy);
+        for (int i = 1; i <= count; i++) {
+            receiver.offer(i);
+        }
+        return receiver;
+    }
+
+    private static List<Integer> drain(BoundedQueueReceiver<Integer> receiver) {
+        List<Integer> result = new ArrayList<>();
+        receiver.drainTo(result, Integer.MAX_VALUE);
+        return result;
+    }
+}
@@ -0,0 +1,21 @@
+package org.peyto.common.processor.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+public class CachedClockTimeProviderTest {
+
+    @Test
+    public void clockIsTicking() throws InterruptedException {
+        CachedClockTimeProvider timeProvider = new CachedClockTimeProvider(1);
+        try {
+            long start = timeProvider.getMillis();
+            assertTrue(Math.abs(System.currentTimeMillis() - start) < 50);
+            Thread.sleep(20);
+            assertTrue(timeProvider.getMillis() > start);
+        } finally {
+            timeProvider.destroy();
+        }
+    }
+}
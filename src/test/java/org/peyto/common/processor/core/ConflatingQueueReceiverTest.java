@@ -0,0 +1,35 @@
+package org.peyto.common.processor.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ConflatingQueueReceiverTest {
+
+    @Test
+    public void latestValuePerKeyInFirstArrivalOrder() {
+        ConflatingQueueReceiver<String, Character> receiver = new ConflatingQueueReceiver<>(s -> s.charAt(0));
+        receiver.offer("a1");
+        receiver.offer("b1");
+        receiver.offer("a2");
+        receiver.offer("c1");
+        receiver.offer("b2");
+        assertEquals(3, receiver.size());
+        assertEquals(2, receiver.getConflatedCount());
+
+        assertEquals("a2", receiver.receive());
+        List<String> rest = new ArrayList<>();
+        receiver.drainTo(rest, Integer.MAX_VALUE);
+        assertEquals(Arrays.asList("b2", "c1"), rest);
+        assertNull(receiver.receive());
+
+        // key is pending again after it was received
+        receiver.offer("a3");
+        assertEquals("a3", receiver.receive());
+    }
+}
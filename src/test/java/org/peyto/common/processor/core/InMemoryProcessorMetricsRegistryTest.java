@@ -0,0 +1,64 @@
+package org.peyto.common.processor.core;
+
+import org.junit.Test;
+import org.peyto.common.processor.BackpressurePolicy;
+import org.peyto.common.processor.ProcessorResult;
+import org.peyto.common.processor.core.trace.CycleTrace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class InMemoryProcessorMetricsRegistryTest {
+
+    @Test
+    public void recordsCyclesExceptionsAndInputs() {
+        InMemoryProcessorMetricsRegistry registry = new InMemoryProcessorMetricsRegistry();
+        ProcessorRuntime<Object> runtime = ProcessorRuntimeFixture.runtime(7, ProcessorRuntimeFixture.receivingProcessor(),
+                ProcessorRuntimeOptions.DEFAULT.withMetricsRegistry(registry));
+        InMemoryProcessorMetrics metrics = registry.getMetrics(7);
+
+        runtime.offer(0, "a");
+        runtime.offer(0, "b");
+        runtime.onSignal(CycleTrace.WakeReason.INPUT, 0, CycleTrace.UNKNOWN);
+        assertEquals(2, metrics.getInputs().get(0).getQueueDepth());
+
+        assertEquals(ProcessorResult.BUSY, runtime.runCycle());
+        assertEquals(ProcessorResult.BUSY, runtime.runCycle());
+        assertEquals(ProcessorResult.IDLE, runtime.runCycle());
+        runtime.offer(0, "fail");
+        assertEquals(ProcessorResult.BUSY, runtime.runCycle());
+
+        assertEquals(3, metrics.getCycles(ProcessorResult.BUSY));
+        assertEquals(1, metrics.getCycles(ProcessorResult.IDLE));
+        assertEquals(0.75, metrics.getBusyRatio(), 1e-9);
+        assertEquals(1, metrics.getExceptions());
+        assertEquals(4, metrics.getCycleNanos().getCount());
+        // the signal is handled by the first cycle only
+        assertEquals(1, metrics.getWakeLatencyNanos().getCount());
+        InMemoryProcessorMetrics.InputMetrics input = metrics.getInputs().get(0);
+        assertEquals(0, input.getQueueDepth());
+        assertTrue(input.isLatencyRecorded());
+        assertEquals(3, input.getLatencyNanos().getCount());
+
+        runtime.finish();
+        assertNull(registry.getMetrics(7));
+    }
+
+    @Test
+    public void boundedInputReportsLatencyAsNotRecorded() {
+        InMemoryProcessorMetricsRegistry registry = new InMemoryProcessorMetricsRegistry();
+        ProcessorRuntime<Object> runtime = ProcessorRuntimeFixture.runtime(7, (config, binder) ->
+                        new ProcessorRuntimeFixture.ReceivingProcessor(binder.registerInput(0, 4, BackpressurePolicy.DROP_OLDEST)),
+                ProcessorRuntimeOptions.DEFAULT.withMetricsRegistry(registry));
+        InMemoryProcessorMetrics.InputMetrics input = registry.getMetrics(7).getInputs().get(0);
+
+        runtime.offer(0, "a");
+        assertEquals(1, input.getQueueDepth());
+        runtime.runCycle();
+        assertFalse(input.isLatencyRecorded());
+        assertEquals(0, input.getLatencyNanos().getCount());
+        assertTrue(input.toString(), input.toString().contains("latencyNanos=not recorded"));
+    }
+}
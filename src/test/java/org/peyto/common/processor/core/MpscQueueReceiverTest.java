@@ -0,0 +1,86 @@
+package org.peyto.common.processor.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MpscQueueReceiverTest {
+
+    @Test
+    public void singleThreadFifo() {
+        MpscQueueReceiver<Integer> receiver = new MpscQueueReceiver<>();
+        assertFalse(receiver.hasData());
+        assertNull(receiver.receive());
+
+        receiver.offer(1);
+        receiver.offer(2);
+        assertTrue(receiver.hasData());
+        assertEquals(Integer.valueOf(1), receiver.receive());
+        receiver.offer(3);
+        assertEquals(Integer.valueOf(2), receiver.receive());
+        assertEquals(Integer.valueOf(3), receiver.receive());
+        assertFalse(receiver.hasData());
+
+        receiver.offer(4);
+        receiver.clear();
+        assertFalse(receiver.hasData());
+    }
+
+    @Test
+    public void drainBacklogInBatches() {
+        MpscQueueReceiver<Integer> receiver = new MpscQueueReceiver<>();
+        for (int i = 0; i < 10; i++) {
+            receiver.offer(i);
+        }
+        assertEquals(10, receiver.size());
+
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(4, receiver.drainTo(drained, 4));
+        assertEquals(Arrays.asList(0, 1, 2, 3), drained);
+        assertEquals(6, receiver.size());
+
+        assertEquals(6, receiver.drainTo(drained::add, 100));
+        assertEquals(10, drained.size());
+        assertEquals(Integer.valueOf(9), drained.get(9));
+        assertEquals(0, receiver.size());
+        assertEquals(0, receiver.drainTo(drained, 100));
+    }
+
+    @Test(timeout = 30000)
+    public void multipleProducersKeepTheirOrder() throws Exception {
+        int producers = 4;
+        int messagesPerProducer = 200_000;
+        MpscQueueReceiver<int[]> receiver = new MpscQueueReceiver<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < messagesPerProducer; i++) {
+                    receiver.offer(new int[]{producer, i});
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        int[] lastReceived = new int[producers];
+        Arrays.fill(lastReceived, -1);
+        int received = 0;
+        while (received < producers * messagesPerProducer) {
+            int[] message = receiver.receive();
+            if (message != null) {
+                assertEquals(lastReceived[message[0]] + 1, message[1]);
+                lastReceived[message[0]] = message[1];
+                received++;
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertFalse(receiver.hasData());
+    }
+}
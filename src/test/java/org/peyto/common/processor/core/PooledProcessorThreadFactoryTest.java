@@ -0,0 +1,146 @@
+package org.peyto.common.processor.core;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.peyto.common.processor.Processor;
+import org.peyto.common.processor.ProcessorContext;
+import org.peyto.common.processor.ProcessorProviderBinder;
+import org.peyto.common.processor.ProcessorResult;
+import org.peyto.common.processor.ProcessorThread;
+import org.peyto.common.processor.Receiver;
+import org.peyto.common.processor.core.schedule.ProcessorScheduler;
+import org.peyto.common.processor.core.trace.CycleTracer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class PooledProcessorThreadFactoryTest {
+
+    private static final int PRODUCERS = 4;
+    private static final int MESSAGES_PER_PRODUCER = 20_000;
+
+    private PooledProcessorThreadFactory factory;
+
+    @Before
+    public void init() {
+        factory = new PooledProcessorThreadFactory(Mockito.mock(ProcessorScheduler.class), new DefaultProcessorTimeProvider(), 3, 16, false,
+                new InMemoryProcessorMetricsRegistry(), new StallWatchdog(0, 1000, Collections.emptyList()),
+                new CycleTracer(0, 1024, "", 1000));
+    }
+
+    @After
+    public void destroy() {
+        factory.destroy();
+    }
+
+    @Test(timeout = 30000)
+    public void processorsAreNeverExecutedConcurrently() throws Exception {
+        int processorsCount = 8;
+        CountDownLatch finished = new CountDownLatch(processorsCount);
+        List<CountingProcessor> processors = new ArrayList<>();
+        List<ProcessorThread> threads = new ArrayList<>();
+        for (long id = 1; id <= processorsCount; id++) {
+            threads.add(factory.createProcessorThread((Object config, ProcessorProviderBinder binder) -> {
+                CountingProcessor processor = new CountingProcessor(binder.registerInput(0));
+                processors.add(processor);
+                return processor;
+            }, id, null, threadId -> finished.countDown(), Long.MAX_VALUE));
+        }
+        threads.forEach(ProcessorThread::start);
+
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < PRODUCERS; p++) {
+            int producer = p;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < MESSAGES_PER_PRODUCER; i++) {
+                    for (ProcessorThread processorThread : threads) {
+                        processorThread.onInput(0, new int[]{producer, i});
+                    }
+                }
+            });
+            producers.add(thread);
+            thread.start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        assertTrue(finished.await(20, TimeUnit.SECONDS));
+        for (CountingProcessor processor : processors) {
+            assertFalse(processor.concurrentExecution);
+            assertFalse(processor.outOfOrder);
+            assertEquals(PRODUCERS * MESSAGES_PER_PRODUCER, processor.received);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void failedInitFinishesProcessor() throws Exception {
+        CountDownLatch finished = new CountDownLatch(1);
+        ProcessorThread thread = factory.createProcessorThread((Object config, ProcessorProviderBinder binder) -> new Processor() {
+            @Override
+            public void init(ProcessorContext context) {
+                throw new IllegalStateException("init failed");
+            }
+
+            @Override
+            public ProcessorResult process(ProcessorContext context) {
+                return ProcessorResult.IDLE;
+            }
+
+            @Override
+            public void handleProcessorException(Exception e) {
+            }
+        }, 1L, null, threadId -> finished.countDown(), Long.MAX_VALUE);
+        thread.start();
+
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        // finished processor ignores the signals
+        thread.wakeProcessor();
+    }
+
+    private static class CountingProcessor implements Processor {
+
+        private final Receiver<int[]> input;
+        private final AtomicBoolean executing = new AtomicBoolean(false);
+        private final int[] lastReceived = new int[PRODUCERS];
+        private int received = 0;
+        private boolean concurrentExecution = false;
+        private boolean outOfOrder = false;
+
+        CountingProcessor(Receiver<int[]> input) {
+            this.input = input;
+            Arrays.fill(lastReceived, -1);
+        }
+
+        @Override
+        public ProcessorResult process(ProcessorContext context) {
+            if (!executing.compareAndSet(false, true)) {
+                concurrentExecution = true;
+            }
+            try {
+                int[] message = input.receive();
+                if (message == null) {
+                    return ProcessorResult.IDLE;
+                }
+                outOfOrder |= message[1] != lastReceived[message[0]] + 1;
+                lastReceived[message[0]] = message[1];
+                return ++received == PRODUCERS * MESSAGES_PER_PRODUCER ? ProcessorResult.END : ProcessorResult.BUSY;
+            } finally {
+                executing.set(false);
+            }
+        }
+
+        @Override
+        public void handleProcessorException(Exception e) {
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.peyto.common.processor.core;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.peyto.common.processor.ProcessorTimeProvider;
+import org.peyto.common.processor.core.schedule.ProcessorScheduler;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ProcessorContextImplTest {
+
+    @Test
+    public void earliestWakeupWins() {
+        ProcessorScheduler scheduler = Mockito.mock(ProcessorScheduler.class);
+        when(scheduler.schedule(1, 20)).thenReturn(101L);
+        when(scheduler.schedule(1, 10)).thenReturn(102L);
+        when(scheduler.schedule(1, 30)).thenReturn(103L);
+        AtomicLong currentMillis = new AtomicLong(0);
+        ProcessorTimeProvider timeProvider = currentMillis::get;
+        ProcessorContextImpl context = new ProcessorContextImpl(1, scheduler, timeProvider, Long.MAX_VALUE, true);
+        context.calculateNextCycleTime();
+
+        assertEquals(101, context.scheduleWakeup(20));
+        // later wakeup is a no-op
+        assertEquals(101, context.scheduleWakeup(25));
+        // earlier wakeup moves the pending one
+        assertEquals(102, context.scheduleWakeup(10));
+        verify(scheduler).cancel(1, 101);
+        verify(scheduler, never()).schedule(1, 25);
+
+        // the pending wakeup has fired
+        currentMillis.set(10);
+        context.calculateNextCycleTime();
+        assertEquals(103, context.scheduleWakeup(30));
+        verify(scheduler, never()).cancel(1, 102);
+        verify(scheduler, times(1)).schedule(1, 30);
+    }
+
+    @Test
+    public void slackWakeupIsDeduplicated() {
+        ProcessorScheduler scheduler = Mockito.mock(ProcessorScheduler.class);
+        when(scheduler.schedule(1, 20)).thenReturn(101L);
+        when(scheduler.schedule(1, 10, 5)).thenReturn(102L);
+        ProcessorContextImpl context = new ProcessorContextImpl(1, scheduler, () -> 0, Long.MAX_VALUE, true);
+        context.calculateNextCycleTime();
+
+        assertEquals(101, context.scheduleWakeup(20));
+        // may fire at 25 at the latest, the pending one fires earlier
+        assertEquals(101, context.scheduleWakeup(15, 10));
+        verify(scheduler, never()).schedule(1, 15, 10);
+        // fires by 15 at the latest, so it replaces the pending one
+        assertEquals(102, context.scheduleWakeup(10, 5));
+        verify(scheduler).cancel(1, 101);
+        assertEquals(102, context.scheduleWakeup(30));
+    }
+}
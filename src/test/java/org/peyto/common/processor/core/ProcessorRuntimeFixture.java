@@ -0,0 +1,67 @@
+package org.peyto.common.processor.core;
+
+import org.mockito.Mockito;
+import org.peyto.common.processor.Processor;
+import org.peyto.common.processor.ProcessorContext;
+import org.peyto.common.processor.ProcessorProvider;
+import org.peyto.common.processor.ProcessorResult;
+import org.peyto.common.processor.ProcessorThread;
+import org.peyto.common.processor.Receiver;
+import org.peyto.common.processor.core.schedule.ProcessorScheduler;
+
+/**
+ * Processor runtime of the tests, with mocked thread, context and scheduler
+ */
+final class ProcessorRuntimeFixture {
+
+    private ProcessorRuntimeFixture() {
+    }
+
+    static ProcessorRuntime<Object> runtime(long threadId, ProcessorProvider<Object> processorProvider) {
+        return runtime(threadId, processorProvider, ProcessorRuntimeOptions.DEFAULT);
+    }
+
+    static ProcessorRuntime<Object> runtime(long threadId, ProcessorProvider<Object> processorProvider, ProcessorRuntimeOptions options) {
+        return runtime(threadId, processorProvider, Mockito.mock(ProcessorScheduler.class), options);
+    }
+
+    static ProcessorRuntime<Object> runtime(long threadId, ProcessorProvider<Object> processorProvider,
+                                            ProcessorScheduler processorScheduler, ProcessorRuntimeOptions options) {
+        ProcessorRuntime<Object> runtime = new ProcessorRuntime<>(Mockito.mock(ProcessorThread.class), threadId, processorProvider,
+                null, Mockito.mock(InternalProcessorContext.class), processorScheduler, id -> { }, options);
+        runtime.attachBroadcastInputs();
+        return runtime;
+    }
+
+    /**
+     * @return provider of the processor, which receives strings from input 0
+     */
+    static ProcessorProvider<Object> receivingProcessor() {
+        return (config, binder) -> new ReceivingProcessor(binder.registerInput(0));
+    }
+
+    /**
+     * Receives one input per cycle: BUSY if it was received, IDLE otherwise. Throws on "fail" input
+     */
+    static class ReceivingProcessor implements Processor {
+
+        private final Receiver<String> input;
+
+        ReceivingProcessor(Receiver<String> input) {
+            this.input = input;
+        }
+
+        @Override
+        public ProcessorResult process(ProcessorContext context) {
+            String value = input.receive();
+            if ("fail".equals(value)) {
+                throw new IllegalStateException("failed");
+            }
+            return value != null ? ProcessorResult.BUSY : ProcessorResult.IDLE;
+        }
+
+        @Override
+        public void handleProcessorException(Exception e) {
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package org.peyto.common.processor.core;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.peyto.common.processor.ProcessorResult;
+import org.peyto.common.processor.ProcessorThread;
+import org.peyto.common.processor.Receiver;
+import org.peyto.common.processor.SlowSubscriberPolicy;
+import org.peyto.common.processor.core.schedule.ProcessorScheduler;
+import org.peyto.common.processor.core.trace.CycleTrace;
+import org.peyto.common.processor.core.trace.CycleTracer;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ProcessorRuntimeTest {
+
+    @Test
+    public void tracesWakeReasons() {
+        CycleTracer tracer = new CycleTracer(1, 16, "", 1000);
+        ProcessorRuntime<Object> runtime = ProcessorRuntimeFixture.runtime(5, ProcessorRuntimeFixture.receivingProcessor(),
+                ProcessorRuntimeOptions.DEFAULT.withCycleTracer(tracer));
+
+        runtime.offer(0, "a");
+        runtime.onSignal(CycleTrace.WakeReason.INPUT, 0, CycleTrace.UNKNOWN);
+        runtime.runCycle();
+        runtime.runCycle();
+        runtime.onSignal(CycleTrace.WakeReason.TIMER, (int) CycleTrace.UNKNOWN, 42);
+        runtime.runCycle();
+
+        List<CycleTrace> traces = tracer.getTraces(5);
+        assertEquals(3, traces.size());
+        CycleTrace input = traces.get(0);
+        assertEquals(CycleTrace.WakeReason.INPUT, input.getWakeReason());
+        assertEquals(0, input.getInputIndex());
+        assertTrue(input.getOldestInputWaitNanos() >= 0);
+        assertTrue(input.getSignalToCycleNanos() >= 0);
+        assertEquals(ProcessorResult.BUSY, input.getResult());
+
+        CycleTrace busy = traces.get(1);
+        assertEquals(CycleTrace.WakeReason.BUSY, busy.getWakeReason());
+        assertEquals(CycleTrace.UNKNOWN, busy.getSignalToCycleNanos());
+        assertEquals(CycleTrace.UNKNOWN, busy.getOldestInputWaitNanos());
+        assertEquals(ProcessorResult.IDLE, busy.getResult());
+
+        CycleTrace timer = traces.get(2);
+        assertEquals(CycleTrace.WakeReason.TIMER, timer.getWakeReason());
+        assertEquals(42, timer.getScheduledWakeMillis());
+
+        runtime.finish();
+        assertTrue(tracer.getTraces(5).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ringInputRejectsOffer() {
+        ProcessorRuntime<Object> runtime = ProcessorRuntimeFixture.runtime(5,
+                (config, binder) -> new ProcessorRuntimeFixture.ReceivingProcessor(binder.registerRingInput(0, 4, () -> "")));
+
+        runtime.offer(0, "a");
+    }
+
+    @Test
+    public void namesMetricsAfterProcessorClass() {
+        InMemoryProcessorMetricsRegistry metricsRegistry = new InMemoryProcessorMetricsRegistry();
+        ProcessorRuntime<Object> runtime = ProcessorRuntimeFixture.runtime(5, ProcessorRuntimeFixture.receivingProcessor(),
+                ProcessorRuntimeOptions.DEFAULT.withMetricsRegistry(metricsRegistry));
+
+        InMemoryProcessorMetrics metrics = metricsRegistry.getMetrics(5);
+        assertEquals("ReceivingProcessor", metrics.getProcessorName());
+        // inputs registered during creation are bound to the metrics
+        assertEquals(1, metrics.getInputs().size());
+        runtime.offer(0, "a");
+        runtime.runCycle();
+        assertEquals(1, metrics.getInputs().get(0).getLatencyNanos().getCount());
+    }
+
+    @Test
+    public void failedRegistrationIsRolledBack() {
+        InMemoryProcessorMetricsRegistry metricsRegistry = new InMemoryProcessorMetricsRegistry();
+        CycleTracer tracer = new CycleTracer(1, 16, "", 1000);
+        ProcessorScheduler scheduler = Mockito.mock(ProcessorScheduler.class);
+        Mockito.doThrow(new IllegalArgumentException("duplicate")).when(scheduler).registerThread(Mockito.eq(5L), Mockito.any());
+        try {
+            ProcessorRuntimeFixture.runtime(5, ProcessorRuntimeFixture.receivingProcessor(), scheduler,
+                    ProcessorRuntimeOptions.DEFAULT.withMetricsRegistry(metricsRegistry).withCycleTracer(tracer));
+            fail("Registration should fail");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertNull(metricsRegistry.getMetrics(5));
+        assertTrue(tracer.getTraces(5).isEmpty());
+    }
+
+    @Test
+    public void failedProviderRegistersNothing() {
+        InMemoryProcessorMetricsRegistry metricsRegistry = new InMemoryProcessorMetricsRegistry();
+        ProcessorScheduler scheduler = Mockito.mock(ProcessorScheduler.class);
+        try {
+            ProcessorRuntimeFixture.runtime(5, (config, binder) -> {
+                throw new IllegalStateException("broken provider");
+            }, scheduler, ProcessorRuntimeOptions.DEFAULT.withMetricsRegistry(metricsRegistry));
+            fail("Provider should fail");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertNull(metricsRegistry.getMetrics(5));
+        Mockito.verifyNoInteractions(scheduler);
+    }
+
+    @Test
+    public void publishingWhileSubscriberIsBuiltWakesOnlyBuiltThreads() {
+        RingBroadcastChannel<String> channel = new RingBroadcastChannel<>(4, SlowSubscriberPolicy.SKIP_OLDEST);
+        ProcessorThread builtThread = Mockito.mock(ProcessorThread.class);
+        channel.subscribe(1).attach(builtThread);
+
+        // the processor thread is not assigned its runtime yet, while the provider publishes
+        new ProcessorThreadImpl<>((config, binder) -> {
+            Receiver<String> input = binder.registerBroadcastInput(0, channel);
+            channel.publish("a");
+            return new ProcessorRuntimeFixture.ReceivingProcessor(input);
+        }, Executors.defaultThreadFactory(), 5L, null, Mockito.mock(InternalProcessorContext.class),
+                Mockito.mock(ProcessorScheduler.class), id -> { });
+        Mockito.verify(builtThread).wakeProcessor();
+        assertEquals(1, channel.getLag(5));
+
+        channel.publish("b");
+        Mockito.verify(builtThread, Mockito.times(2)).wakeProcessor();
+        assertEquals(2, channel.getLag(5));
+    }
+}
@@ -0,0 +1,161 @@
+package org.peyto.common.processor.core;
+
+import org.junit.Test;
+import org.peyto.common.processor.ProcessorThread;
+import org.peyto.common.processor.SlowSubscriberPolicy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class RingBroadcastChannelTest {
+
+    @Test
+    public void everySubscriberReadsWithOwnCursor() {
+        RingBroadcastChannel<Integer> channel = new RingBroadcastChannel<>(8, SlowSubscriberPolicy.BLOCK_PUBLISHER);
+        ProcessorThread firstThread = mock(ProcessorThread.class);
+        ProcessorThread secondThread = mock(ProcessorThread.class);
+        RingBroadcastChannel.Subscriber<Integer> first = subscribe(channel, 1, firstThread);
+        RingBroadcastChannel.Subscriber<Integer> second = subscribe(channel, 2, secondThread);
+
+        channel.publishAll(Arrays.asList(1, 2, 3));
+        verify(firstThread, times(1)).wakeProcessor();
+        verify(secondThread, times(1)).wakeProcessor();
+
+        assertEquals(Integer.valueOf(1), first.receive());
+        assertEquals(2, channel.getLag(1));
+        assertEquals(3, channel.getMaxLag());
+        assertEquals(Arrays.asList(1, 2, 3), drain(second));
+        assertEquals(Arrays.asList(2, 3), drain(first));
+        assertNull(first.receive());
+
+        first.unsubscribe();
+        assertEquals(1, channel.getSubscribersCount());
+        assertEquals(-1, channel.getLag(1));
+    }
+
+    @Test
+    public void slowSubscriberSkipsOldest() {
+        RingBroadcastChannel<Integer> channel = new RingBroadcastChannel<>(4, SlowSubscriberPolicy.SKIP_OLDEST);
+        RingBroadcastChannel.Subscriber<Integer> subscriber = subscribe(channel, 1, mock(ProcessorThread.class));
+        for (int i = 1; i <= 10; i++) {
+            channel.publish(i);
+        }
+        assertEquals(Arrays.asList(8, 9, 10), drain(subscriber));
+        assertEquals(7, channel.getSkippedCount(1));
+    }
+
+    @Test
+    public void slowSubscriberBlocksPublisher() throws InterruptedException {
+        RingBroadcastChannel<Integer> channel = new RingBroadcastChannel<>(2, SlowSubscriberPolicy.BLOCK_PUBLISHER);
+        RingBroadcastChannel.Subscriber<Integer> subscriber = subscribe(channel, 1, mock(ProcessorThread.class));
+        Thread publisher = new Thread(() -> {
+            for (int i = 1; i <= 1000; i++) {
+                channel.publish(i);
+            }
+        });
+        publisher.start();
+        List<Integer> received = new ArrayList<>();
+        while (received.size() < 1000) {
+            Integer element = subscriber.receive();
+            if (element != null) {
+                received.add(element);
+            }
+        }
+        publisher.join();
+        for (int i = 0; i < received.size(); i++) {
+            assertEquals(Integer.valueOf(i + 1), received.get(i));
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void subscribingDoesNotWaitForBlockedPublisher() throws InterruptedException {
+        RingBroadcastChannel<Integer> channel = new RingBroadcastChannel<>(2, SlowSubscriberPolicy.BLOCK_PUBLISHER);
+        // never reads, like a processor, which is built, but not started
+        RingBroadcastChannel.Subscriber<Integer> unstarted = subscribe(channel, 1, mock(ProcessorThread.class));
+        Thread publisher = new Thread(() -> channel.publishAll(Arrays.asList(1, 2, 3)));
+        publisher.start();
+        while (channel.getLag(1) < 2) {
+            Thread.yield();
+        }
+
+        RingBroadcastChannel.Subscriber<Integer> subscriber = subscribe(channel, 2, mock(ProcessorThread.class));
+        assertEquals(2, channel.getSubscribersCount());
+        unstarted.unsubscribe();
+        publisher.join();
+        assertEquals(Arrays.asList(3), drain(subscriber));
+    }
+
+    @Test(timeout = 10000)
+    public void lappedSubscriberNeverReadsOverwrittenSlot() throws InterruptedException {
+        RingBroadcastChannel<Integer> channel = new RingBroadcastChannel<>(4, SlowSubscriberPolicy.SKIP_OLDEST);
+        // not attached, the subscriber polls instead of being woken
+        RingBroadcastChannel.Subscriber<Integer> subscriber = channel.subscribe(1);
+        int elements = 1_000_000;
+        Thread publisher = new Thread(() -> {
+            for (int i = 0; i < elements; i++) {
+                channel.publish(i);
+            }
+        });
+        publisher.start();
+        long received = 0;
+        while (publisher.isAlive() || subscriber.hasData()) {
+            Integer element = subscriber.receive();
+            if (element != null) {
+                received++;
+                // the element is the one of the sequence read, not of a later lap of the ring
+                assertEquals(received + channel.getSkippedCount(1) - 1, element.longValue());
+            }
+        }
+        publisher.join();
+        assertEquals(elements, received + channel.getSkippedCount(1));
+    }
+
+    @Test(timeout = 10000)
+    public void publishAllLargerThanRingWakesIdleSubscriber() throws InterruptedException {
+        RingBroadcastChannel<Integer> channel = new RingBroadcastChannel<>(4, SlowSubscriberPolicy.BLOCK_PUBLISHER);
+        // the subscriber reads only when woken, like an idle processor
+        Semaphore wakeups = new Semaphore(0);
+        ProcessorThread processorThread = mock(ProcessorThread.class);
+        doAnswer(invocation -> {
+            wakeups.release();
+            return null;
+        }).when(processorThread).wakeProcessor();
+        RingBroadcastChannel.Subscriber<Integer> subscriber = subscribe(channel, 1, processorThread);
+        List<Integer> elements = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            elements.add(i);
+        }
+        Thread publisher = new Thread(() -> channel.publishAll(elements));
+        publisher.start();
+
+        List<Integer> received = new ArrayList<>();
+        while (received.size() < elements.size()) {
+            wakeups.acquire();
+            subscriber.drainTo(received, Integer.MAX_VALUE);
+        }
+        publisher.join();
+        assertEquals(elements, received);
+    }
+
+    private static RingBroadcastChannel.Subscriber<Integer> subscribe(RingBroadcastChannel<Integer> channel, long threadId,
+                                                                      ProcessorThread processorThread) {
+        RingBroadcastChannel.Subscriber<Integer> subscriber = channel.subscribe(threadId);
+        subscriber.attach(processorThread);
+        return subscriber;
+    }
+
+    private static List<Integer> drain(RingBroadcastChannel.Subscriber<Integer> subscriber) {
+        List<Integer> result = new ArrayList<>();
+        subscriber.drainTo(result, Integer.MAX_VALUE);
+        return result;
+    }
+}
@@ -0,0 +1,100 @@
+package org.peyto.common.processor.core;
+
+import org.junit.Test;
+import org.peyto.common.processor.ProcessorThread;
+import org.peyto.common.processor.RingPublisher;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class RingBufferReceiverTest {
+
+    @Test
+    public void slotsAreReusedAfterRelease() {
+        RingBufferReceiver<AtomicLong> ring = new RingBufferReceiver<>(2, AtomicLong::new);
+        ProcessorThread processorThread = mock(ProcessorThread.class);
+        RingPublisher<AtomicLong> publisher = ring.publisher(processorThread);
+
+        publish(publisher, 1);
+        publish(publisher, 2);
+        assertEquals(-1, publisher.tryClaim());
+        verify(processorThread, times(2)).wakeProcessor();
+
+        AtomicLong first = ring.receive();
+        assertEquals(1, first.get());
+        // the slot is still held by the processor
+        assertEquals(-1, publisher.tryClaim());
+        assertEquals(2, ring.receive().get());
+
+        ring.releaseConsumed();
+        publish(publisher, 3);
+        AtomicLong third = ring.receive();
+        assertSame(first, third);
+        assertEquals(3, third.get());
+        assertNull(ring.receive());
+    }
+
+    @Test
+    public void outOfOrderPublish() {
+        RingBufferReceiver<AtomicLong> ring = new RingBufferReceiver<>(4, AtomicLong::new);
+        long first = ring.claim();
+        long second = ring.claim();
+        ring.slot(second).set(2);
+        ring.publish(second);
+        // the first claimed slot blocks the following ones
+        assertFalse(ring.hasData());
+        ring.slot(first).set(1);
+        ring.publish(first);
+
+        AtomicLong sum = new AtomicLong();
+        assertEquals(2, ring.drainTo(slot -> sum.addAndGet(slot.get()), 10));
+        assertEquals(3, sum.get());
+    }
+
+    @Test
+    public void multiProducer() throws InterruptedException {
+        RingBufferReceiver<AtomicLong> ring = new RingBufferReceiver<>(16, AtomicLong::new);
+        int producers = 4;
+        int perProducer = 20_000;
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            threads[p] = new Thread(() -> {
+                for (int i = 1; i <= perProducer; i++) {
+                    long sequence = ring.claim();
+                    ring.slot(sequence).set(i);
+                    ring.publish(sequence);
+                }
+            });
+            threads[p].start();
+        }
+        long received = 0;
+        long sum = 0;
+        while (received < (long) producers * perProducer) {
+            AtomicLong slot = ring.receive();
+            if (slot != null) {
+                received++;
+                sum += slot.get();
+            } else {
+                // don't starve the producers on a small machine
+                Thread.yield();
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals((long) producers * perProducer * (perProducer + 1) / 2, sum);
+    }
+
+    private static void publish(RingPublisher<AtomicLong> publisher, long value) {
+        long sequence = publisher.claim();
+        publisher.slot(sequence).set(value);
+        publisher.publish(sequence);
+    }
+}
@@ -0,0 +1,71 @@
+package org.peyto.common.processor.core;
+
+import org.junit.Test;
+import org.peyto.common.processor.Processor;
+import org.peyto.common.processor.ProcessorContext;
+import org.peyto.common.processor.ProcessorResult;
+import org.peyto.common.processor.metrics.ProcessorStallListener;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class StallWatchdogTest {
+
+    @Test(timeout = 10000)
+    public void samplesStalledCycleOnce() {
+        List<StackTraceElement[]> stalledStacks = new CopyOnWriteArrayList<>();
+        ProcessorStallListener listener = (threadId, processorName, stalledMillis, stackTrace) -> stalledStacks.add(stackTrace);
+        StallWatchdog watchdog = new StallWatchdog(20, 10_000, Collections.singletonList(listener));
+        try {
+            ProcessorRuntime<Object> runtime = ProcessorRuntimeFixture.runtime(3, (config, binder) -> new SleepingProcessor(),
+                    ProcessorRuntimeOptions.DEFAULT.withStallWatchdog(watchdog));
+            StallWatchdog.ProcessorStalls stalls = watchdog.getStalls(3);
+
+            runtime.runCycle();
+
+            assertEquals(1, stalls.getStallsCount());
+            assertTrue(stalls.getStallMillis().getMax() >= 200);
+            assertEquals(0, stalls.getCurrentCycleMillis());
+            // rate limited to one sample per interval
+            assertEquals(1, stalledStacks.size());
+            assertEquals(1, stalls.getSamples().size());
+            assertTrue(Arrays.stream(stalledStacks.get(0)).anyMatch(element -> element.getClassName().equals(SleepingProcessor.class.getName())));
+
+            runtime.finish();
+            assertNull(watchdog.getStalls(3));
+        } finally {
+            watchdog.destroy();
+        }
+    }
+
+    @Test
+    public void disabledByZeroBudget() {
+        StallWatchdog watchdog = new StallWatchdog(0, 1000, Collections.emptyList());
+        assertFalse(watchdog.isEnabled());
+        assertNull(watchdog.track(1, "processor"));
+    }
+
+    private static class SleepingProcessor implements Processor {
+
+        @Override
+        public ProcessorResult process(ProcessorContext context) {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return ProcessorResult.IDLE;
+        }
+
+        @Override
+        public void handleProcessorException(Exception e) {
+        }
+    }
+}
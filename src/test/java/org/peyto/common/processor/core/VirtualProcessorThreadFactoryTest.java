@@ -0,0 +1,22 @@
+package org.peyto.common.processor.core;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.peyto.common.processor.core.schedule.ProcessorScheduler;
+import org.peyto.common.processor.core.trace.CycleTracer;
+import org.peyto.common.processor.metrics.ProcessorMetricsRegistry;
+
+import java.util.Collections;
+
+public class VirtualProcessorThreadFactoryTest {
+
+    @Test(expected = IllegalStateException.class)
+    public void unsupportedJdkIsRejected() {
+        // supported, when the java21 classes of the multi-release jar are on the classpath
+        Assume.assumeFalse(VirtualThreads.isSupported());
+        new VirtualProcessorThreadFactory(Mockito.mock(ProcessorScheduler.class), new DefaultProcessorTimeProvider(), false,
+                ProcessorMetricsRegistry.NOOP, new StallWatchdog(0, 1000, Collections.emptyList()),
+                new CycleTracer(0, 1024, "", 1000));
+    }
+}
@@ -1,5 +1,6 @@
 package org.peyto.common.processor.core.schedule;
 
+import org.peyto.common.processor.PeriodicMode;
 import org.peyto.common.processor.ProcessorThread;
 import org.peyto.common.processor.ProcessorTimeProvider;
 import org.peyto.common.processor.core.ThreadSleeper;
@@ -22,7 +23,7 @@ public class DefaultProcessorSchedulerTest {
     public void init() {
         timeProvider = new MockedTimeProvider(0);
         sleeper = new MockedThreadSleeper(timeProvider);
-        defaultProcessorScheduler = new DefaultProcessorScheduler(timeProvider, sleeper, true);
+        defaultProcessorScheduler = new DefaultProcessorScheduler(timeProvider, sleeper, true, 50, 1);
     }
 
     @Test(timeout = 10000)
@@ -38,7 +39,91 @@ public class DefaultProcessorSchedulerTest {
 
         blockTestUntilDaemonThreadSettled();
         assertSleepingWithoutTimeout(); // no more schedules - just sleeping
-        Mockito.verify(thread1).wakeProcessor();
+        Mockito.verify(thread1).onScheduledWakeup(5);
+    }
+
+    @Test(timeout = 10000)
+    public void scheduleWithSlack() throws Exception {
+        ProcessorThread thread1 = mockProcessorThread(1);
+        ProcessorThread thread2 = mockProcessorThread(2);
+
+        // [5, 9] window is aligned to 8
+        defaultProcessorScheduler.schedule(1, 5, 4);
+        // [7, 20] window joins the existing timestamp 8
+        defaultProcessorScheduler.schedule(2, 7, 13);
+        blockTestUntilDaemonThreadSettled();
+        assertSleepingWithTimeout(8);
+
+        timeProvider.increase(8);
+        sleeper.wakedByTimeout();
+
+        blockTestUntilDaemonThreadSettled();
+        assertSleepingWithoutTimeout();
+        Mockito.verify(thread1).onScheduledWakeup(8);
+        Mockito.verify(thread2).onScheduledWakeup(8);
+    }
+
+    @Test(timeout = 10000)
+    public void snapshotAndLagMetrics() throws Exception {
+        ProcessorThread thread1 = mockProcessorThread(1);
+        mockProcessorThread(2);
+        defaultProcessorScheduler.schedule(1, 5);
+        defaultProcessorScheduler.schedule(2, 5);
+        long cancelledTimer = defaultProcessorScheduler.schedule(2, 9);
+        defaultProcessorScheduler.cancel(2, cancelledTimer);
+        blockTestUntilDaemonThreadSettled();
+        SchedulerSnapshot snapshot = defaultProcessorScheduler.snapshot();
+        assertEquals(2, snapshot.getTimersCount());
+        assertEquals(5, snapshot.getEarliestDeadlineMillis());
+        assertEquals(1, snapshot.getShardsCount());
+
+        // the daemon is 3 ms late
+        timeProvider.increase(8);
+        sleeper.wakedByTimeout();
+        blockTestUntilDaemonThreadSettled();
+        Mockito.verify(thread1).onScheduledWakeup(5);
+
+        snapshot = defaultProcessorScheduler.snapshot();
+        assertEquals(0, snapshot.getTimersCount());
+        assertEquals(SchedulerTimeline.UNSET_TIMESTAMP, snapshot.getEarliestDeadlineMillis());
+        SchedulerMetrics metrics = defaultProcessorScheduler.getMetrics();
+        assertEquals(1, metrics.getNotifyLagMillis().getCount());
+        assertEquals(3, metrics.getNotifyLagMillis().getMax());
+        assertEquals(3, metrics.getWakeupLagMillis().getMax());
+        assertTrue(metrics.getLockHoldNanos().getCount() > 0);
+        assertEquals(metrics.getLockHoldNanos().getCount(), metrics.getLockWaitNanos().getCount());
+    }
+
+    @Test(timeout = 10000)
+    public void periodicFixedDelay() throws Exception {
+        ProcessorThread thread1 = mockProcessorThread(1);
+        defaultProcessorScheduler.schedulePeriodic(1, 5, 5, PeriodicMode.FIXED_DELAY);
+        blockTestUntilDaemonThreadSettled();
+        assertSleepingWithTimeout(5);
+
+        // fired late at 7, the next one is 5 ms later
+        timeProvider.increase(7);
+        sleeper.wakedByTimeout();
+        blockTestUntilDaemonThreadSettled();
+        assertSleepingWithTimeout(5);
+        Mockito.verify(thread1).onScheduledWakeup(5);
+
+        defaultProcessorScheduler.cancelAllScheduled(1);
+        timeProvider.increase(5);
+        sleeper.wakedByTimeout();
+        blockTestUntilDaemonThreadSettled();
+        assertSleepingWithoutTimeout();
+        // not fired again
+        Mockito.verify(thread1).onScheduledWakeup(Mockito.anyLong());
+    }
+
+    @Test
+    public void alignToSlack() {
+        assertEquals(5, ProcessorScheduler.alignToSlack(5, 0));
+        assertEquals(8, ProcessorScheduler.alignToSlack(5, 4));
+        assertEquals(16, ProcessorScheduler.alignToSlack(7, 13));
+        assertEquals(1024, ProcessorScheduler.alignToSlack(1000, 100));
+        assertEquals(1000, ProcessorScheduler.alignToSlack(1000, 7));
     }
 
     @Test(timeout = 10000)
@@ -57,7 +142,7 @@ public class DefaultProcessorSchedulerTest {
 
         blockTestUntilDaemonThreadSettled();
         assertSleepingWithTimeout(3);
-        Mockito.verify(thread1).wakeProcessor();
+        Mockito.verify(thread1).onScheduledWakeup(5);
 
         // 3 more ms passed
         timeProvider.increase(3);
@@ -65,7 +150,7 @@ public class DefaultProcessorSchedulerTest {
 
         blockTestUntilDaemonThreadSettled();
         assertSleepingWithoutTimeout();
-        Mockito.verify(thread2).wakeProcessor();
+        Mockito.verify(thread2).onScheduledWakeup(8);
     }
 
     @Test(timeout = 10000)
@@ -91,14 +176,14 @@ public class DefaultProcessorSchedulerTest {
 
         blockTestUntilDaemonThreadSettled();
         assertSleepingWithTimeout(6);
-        Mockito.verify(thread2).wakeProcessor();
+        Mockito.verify(thread2).onScheduledWakeup(4);
 
         timeProvider.increase(7);
         sleeper.wakedByTimeout();
 
         blockTestUntilDaemonThreadSettled();
         assertSleepingWithoutTimeout();
-        Mockito.verify(thread1).wakeProcessor();
+        Mockito.verify(thread1).onScheduledWakeup(10);
     }
 
     @Test(timeout = 10000)
@@ -126,9 +211,9 @@ public class DefaultProcessorSchedulerTest {
         sleeper.wakedByTimeout();
         blockTestUntilDaemonThreadSettled();
         assertSleepingWithoutTimeout();
-        Mockito.verify(thread1).wakeProcessor();
-        Mockito.verify(thread2).wakeProcessor();
-        Mockito.verify(thread3).wakeProcessor();
+        Mockito.verify(thread1).onScheduledWakeup(10);
+        Mockito.verify(thread2).onScheduledWakeup(7);
+        Mockito.verify(thread3).onScheduledWakeup(10);
     }
 
     @Test(timeout = 10000)
@@ -139,9 +224,36 @@ public class DefaultProcessorSchedulerTest {
 
         blockTestUntilDaemonThreadSettled();
         assertSleepingWithoutTimeout(); // no more schedules - just sleeping
-        Mockito.verify(thread1).wakeProcessor();
+        Mockito.verify(thread1).onScheduledWakeup(95);
     }
 
+    @Test(timeout = 10000)
+    public void cancelScheduled() throws Exception {
+        ProcessorThread thread1 = mockProcessorThread(1);
+        ProcessorThread thread2 = mockProcessorThread(2);
+        DefaultProcessorScheduler internalSchedulerExposed = (DefaultProcessorScheduler) defaultProcessorScheduler;
+
+        long timer1 = defaultProcessorScheduler.schedule(1, timeProvider.getMillis() + 5);
+        long timer2 = defaultProcessorScheduler.schedule(1, timeProvider.getMillis() + 5);
+        defaultProcessorScheduler.schedule(2, timeProvider.getMillis() + 8);
+        long timer3 = defaultProcessorScheduler.schedule(2, timeProvider.getMillis() + 9);
+        blockTestUntilDaemonThreadSettled();
+
+        assertTrue(defaultProcessorScheduler.cancel(1, timer1));
+        assertFalse(defaultProcessorScheduler.cancel(1, timer1));
+        assertFalse(defaultProcessorScheduler.cancel(2, timer2)); // not a timer of the thread
+        assertEquals("[5ms : 1, 8ms : 2, 9ms : 2]", internalSchedulerExposed.timelineAsLimitedString(timeProvider.getMillis()));
+        assertTrue(defaultProcessorScheduler.cancel(1, timer2));
+        defaultProcessorScheduler.onFinish(2); // purges pending timers of the thread
+        assertFalse(defaultProcessorScheduler.cancel(2, timer3));
+
+        timeProvider.increase(10);
+        sleeper.wakedByTimeout();
+        blockTestUntilDaemonThreadSettled();
+        assertSleepingWithoutTimeout();
+        Mockito.verify(thread1, Mockito.never()).onScheduledWakeup(Mockito.anyLong());
+        Mockito.verify(thread2, Mockito.never()).onScheduledWakeup(Mockito.anyLong());
+    }
 
     ProcessorThread mockProcessorThread(long id) {
         ProcessorThread thread = Mockito.mock(ProcessorThread.class);
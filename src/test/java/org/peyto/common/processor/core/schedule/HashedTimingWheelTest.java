@@ -0,0 +1,97 @@
+package org.peyto.common.processor.core.schedule;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class HashedTimingWheelTest {
+
+    @Test
+    public void expireInDeadlineOrderOfTicks() {
+        HashedTimingWheel wheel = new HashedTimingWheel(1000);
+        wheel.add(1005, 1);
+        wheel.add(1300, 2); // level 1
+        wheel.add(1000 + 70_000, 3); // level 2
+        wheel.add(1000 + 20_000_000, 4); // level 3
+        wheel.add(1000 + (1L << 33), 5); // overflow
+        wheel.add(999, 6); // in the past
+
+        assertEquals(999, wheel.nextDeadline());
+        assertExpired(wheel, 1000, 6);
+        assertEquals(1005, wheel.nextDeadline());
+        assertExpired(wheel, 1004);
+        assertExpired(wheel, 1005, 1);
+        assertEquals(1300, wheel.nextDeadline());
+        assertExpired(wheel, 1299);
+        assertExpired(wheel, 1300, 2);
+        assertEquals(71_000, wheel.nextDeadline());
+        assertExpired(wheel, 71_000, 3);
+        assertEquals(20_001_000, wheel.nextDeadline());
+        assertExpired(wheel, 20_000_999);
+        assertExpired(wheel, 20_001_000, 4);
+        assertEquals(1000 + (1L << 33), wheel.nextDeadline());
+        assertExpired(wheel, 1000 + (1L << 33), 5);
+        assertTrue(wheel.isEmpty());
+        assertEquals(HashedTimingWheel.NO_DEADLINE, wheel.nextDeadline());
+    }
+
+    @Test
+    public void randomTimersExpireExactlyAtDeadline() {
+        Random random = new Random(42);
+        HashedTimingWheel wheel = new HashedTimingWheel(0);
+        List<long[]> pending = new ArrayList<>();
+        LongPairBuffer expired = new LongPairBuffer(16);
+        long now = 0;
+        long value = 0;
+        for (int step = 0; step < 20_000; step++) {
+            int timersToAdd = random.nextInt(3);
+            for (int i = 0; i < timersToAdd; i++) {
+                long deadline = now + randomDelay(random);
+                wheel.add(deadline, value);
+                pending.add(new long[]{deadline, value});
+                value++;
+            }
+            long expectedNext = pending.stream().mapToLong(timer -> timer[0]).min().orElse(HashedTimingWheel.NO_DEADLINE);
+            assertEquals(expectedNext, wheel.nextDeadline());
+
+            now += random.nextBoolean() ? random.nextInt(10) : randomDelay(random);
+            wheel.expire(now, expired);
+            for (int i = 0; i < expired.size(); i++) {
+                assertTrue(expired.first(i) <= now);
+                long expiredValue = expired.second(i);
+                assertTrue(pending.removeIf(timer -> timer[1] == expiredValue));
+            }
+            expired.clear();
+            for (long[] timer : pending) {
+                assertTrue("Timer " + timer[1] + " should have expired at " + timer[0] + ", now " + now, timer[0] > now);
+            }
+            assertEquals(pending.size(), wheel.size());
+        }
+    }
+
+    private static long randomDelay(Random random) {
+        switch (random.nextInt(4)) {
+            case 0:
+                return random.nextInt(300);
+            case 1:
+                return random.nextInt(100_000);
+            case 2:
+                return random.nextInt(50_000_000);
+            default:
+                return (long) (random.nextDouble() * (1L << 34));
+        }
+    }
+
+    private static void assertExpired(HashedTimingWheel wheel, long now, long... expectedValues) {
+        LongPairBuffer expired = new LongPairBuffer(4);
+        wheel.expire(now, expired);
+        assertEquals(expectedValues.length, expired.size());
+        for (int i = 0; i < expectedValues.length; i++) {
+            assertEquals(expectedValues[i], expired.second(i));
+        }
+    }
+}
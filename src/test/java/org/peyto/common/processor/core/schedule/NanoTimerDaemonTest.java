@@ -0,0 +1,147 @@
+package org.peyto.common.processor.core.schedule;
+
+import org.junit.Test;
+import org.peyto.common.processor.ProcessorThread;
+import org.peyto.common.processor.core.DefaultProcessorTimeProvider;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.longThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+public class NanoTimerDaemonTest {
+
+    private static final int TIMERS = 20;
+
+    @Test
+    public void wakesAtNanoDeadlines() throws InterruptedException {
+        DefaultProcessorTimeProvider timeProvider = new DefaultProcessorTimeProvider();
+        // not a mock: daemon wakes the timers one by one, so a slow wake would make the next timers late
+        WakeRecordingThread thread = new WakeRecordingThread(timeProvider);
+        // spins the last millisecond, so the test doesn't depend on park overshoot of the machine
+        NanoTimerDaemon daemon = new NanoTimerDaemon("test-nano-scheduler", timeProvider, id -> thread, 1_000_000);
+
+        // deadlines are 10 ms + 300 ns apart, so they never fall on a millisecond boundary,
+        // and a pause of the test machine makes only a few timers late
+        long start = timeProvider.getNanos() + 5_000_000;
+        List<Long> deadlines = new ArrayList<>();
+        for (int i = 0; i < TIMERS; i++) {
+            long deadline = start + i * 10_000_300L;
+            deadlines.add(deadline);
+            daemon.schedule(1, deadline);
+        }
+
+        assertTrue("Timers haven't fired", thread.awaitWakes(2000));
+        for (int i = 0; i < TIMERS; i++) {
+            assertTrue("Timer " + i + " has fired before its deadline", thread.wakeNanos[i] >= deadlines.get(i));
+        }
+        // jitter is recorded right after the wake
+        long jitterTimeout = System.currentTimeMillis() + 1000;
+        while (daemon.getWakeJitter().getCount() < TIMERS && System.currentTimeMillis() < jitterTimeout) {
+            Thread.sleep(1);
+        }
+        assertEquals(TIMERS, daemon.getWakeJitter().getCount());
+        // daemon spins before the deadline, so a typical timer is late by far less than a millisecond
+        // (percentile is the upper bound of power of 2 bucket, so it's below 2^19 ns)
+        assertTrue(daemon.getWakeJitter().toString(), daemon.getWakeJitter().getValueAtPercentile(50) < 1_000_000);
+        assertEquals(0, daemon.getPendingCount());
+    }
+
+    @Test
+    public void cancelRemovesTimer() {
+        Map<Long, ProcessorThread> threads = new HashMap<>();
+        ProcessorThread first = mock(ProcessorThread.class);
+        ProcessorThread second = mock(ProcessorThread.class);
+        threads.put(1L, first);
+        threads.put(2L, second);
+        DefaultProcessorTimeProvider timeProvider = new DefaultProcessorTimeProvider();
+        NanoTimerDaemon daemon = new NanoTimerDaemon("test-nano-scheduler", timeProvider, threads::get, 50_000);
+
+        long now = timeProvider.getNanos();
+        long cancelled = daemon.schedule(2, now + 10_000_000);
+        daemon.schedule(1, now + 20_000_500);
+        assertTrue(daemon.cancel(2, cancelled));
+        assertFalse(daemon.cancel(2, cancelled));
+        assertFalse(daemon.cancel(1, cancelled));
+        // not left in the timeline until its deadline
+        assertEquals(1, daemon.getPendingCount());
+
+        // woken as a scheduled wakeup, which has expired by now
+        verify(first, timeout(1000)).onScheduledWakeup(longThat(deadlineMillis -> deadlineMillis <= timeProvider.getMillis()));
+        verify(second, never()).onScheduledWakeup(anyLong());
+        assertEquals(0, daemon.getPendingCount());
+    }
+
+    @Test
+    public void cancelAllOfThread() throws InterruptedException {
+        ProcessorThread thread = mock(ProcessorThread.class);
+        DefaultProcessorTimeProvider timeProvider = new DefaultProcessorTimeProvider();
+        NanoTimerDaemon daemon = new NanoTimerDaemon("test-nano-scheduler", timeProvider, id -> thread, 50_000);
+        long now = timeProvider.getNanos();
+        daemon.schedule(1, now + 20_000_000);
+        daemon.schedule(1, now + 30_000_000);
+        daemon.cancelAll(1);
+        assertEquals(0, daemon.getPendingCount());
+        Thread.sleep(50);
+        verify(thread, never()).onScheduledWakeup(anyLong());
+    }
+
+    private static class WakeRecordingThread implements ProcessorThread {
+
+        private final DefaultProcessorTimeProvider timeProvider;
+        private final long[] wakeNanos = new long[TIMERS];
+        private final CountDownLatch wakes = new CountDownLatch(TIMERS);
+        private int wakeCount;
+
+        WakeRecordingThread(DefaultProcessorTimeProvider timeProvider) {
+            this.timeProvider = timeProvider;
+        }
+
+        boolean awaitWakes(long timeoutMillis) throws InterruptedException {
+            return wakes.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void wakeProcessor() {
+            // called by the daemon thread only, latch publishes the times
+            if (wakeCount < TIMERS) {
+                wakeNanos[wakeCount++] = timeProvider.getNanos();
+                wakes.countDown();
+            }
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void run() {
+        }
+
+        @Override
+        public void onInput(int number, Object input) {
+        }
+
+        @Override
+        public long getCustomId() {
+            return 1;
+        }
+
+        @Override
+        public Object getProcessorState(Object... request) {
+            return null;
+        }
+    }
+}
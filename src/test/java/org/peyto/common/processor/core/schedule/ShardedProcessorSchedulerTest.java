@@ -0,0 +1,43 @@
+package org.peyto.common.processor.core.schedule;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.peyto.common.processor.ProcessorThread;
+import org.peyto.common.processor.core.DefaultProcessorTimeProvider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ShardedProcessorSchedulerTest {
+
+    @Test
+    public void timersAreFannedOutByShards() throws InterruptedException {
+        DefaultProcessorTimeProvider timeProvider = new DefaultProcessorTimeProvider();
+        ShardedProcessorScheduler scheduler = new ShardedProcessorScheduler(timeProvider, false, 50, 4, 0);
+        int threadsCount = 64;
+        ProcessorThread[] threads = new ProcessorThread[threadsCount];
+        long deadline = timeProvider.getMillis() + 20;
+        for (int i = 0; i < threadsCount; i++) {
+            threads[i] = Mockito.mock(ProcessorThread.class);
+            scheduler.registerThread(i, threads[i]);
+            scheduler.schedule(i, deadline);
+        }
+        long cancelled = scheduler.schedule(0, deadline + 10);
+        assertTrue(scheduler.cancel(0, cancelled));
+        assertFalse(scheduler.cancel(1, cancelled + 1000));
+
+        for (ProcessorThread thread : threads) {
+            Mockito.verify(thread, Mockito.timeout(1000)).onScheduledWakeup(deadline);
+        }
+        assertEquals(4, scheduler.getShardsCount());
+        // every shard has woken its threads, lag is recorded after the fan-out
+        for (int shard = 0; shard < scheduler.getShardsCount(); shard++) {
+            long waitUntil = System.currentTimeMillis() + 1000;
+            while (scheduler.getShardWakeupLagMillis(shard).getCount() == 0 && System.currentTimeMillis() < waitUntil) {
+                Thread.sleep(1);
+            }
+            assertTrue(scheduler.getShardWakeupLagMillis(shard).getCount() > 0);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package org.peyto.common.processor.core.schedule;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TimedLockTest {
+
+    @Test
+    public void disabledTimingRecordsNothing() {
+        SchedulerMetrics metrics = new SchedulerMetrics();
+        TimedLock lock = new TimedLock(metrics, 0);
+        lockAndUnlock(lock, 100);
+        assertEquals(0, metrics.getLockWaitNanos().getCount());
+        assertEquals(0, metrics.getLockHoldNanos().getCount());
+    }
+
+    @Test
+    public void sampledTimingRecordsSomeAcquisitions() {
+        SchedulerMetrics metrics = new SchedulerMetrics();
+        TimedLock lock = new TimedLock(metrics, 4);
+        lockAndUnlock(lock, 10_000);
+        long sampled = metrics.getLockWaitNanos().getCount();
+        assertTrue("Sampled " + sampled, sampled > 0 && sampled < 10_000);
+        assertEquals(sampled, metrics.getLockHoldNanos().getCount());
+    }
+
+    @Test
+    public void nestedAcquisitionsAreNotRecorded() {
+        SchedulerMetrics metrics = new SchedulerMetrics();
+        TimedLock lock = new TimedLock(metrics, 1);
+        lock.lock();
+        lockAndUnlock(lock, 10);
+        lock.unlock();
+        assertEquals(1, metrics.getLockWaitNanos().getCount());
+        assertEquals(1, metrics.getLockHoldNanos().getCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeSamplingIsRejected() {
+        new TimedLock(new SchedulerMetrics(), -1);
+    }
+
+    private static void lockAndUnlock(TimedLock lock, int times) {
+        for (int i = 0; i < times; i++) {
+            lock.lock();
+            lock.unlock();
+        }
+    }
+}
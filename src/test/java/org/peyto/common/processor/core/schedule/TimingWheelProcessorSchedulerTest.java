@@ -0,0 +1,221 @@
+package org.peyto.common.processor.core.schedule;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.peyto.common.processor.PeriodicMode;
+import org.peyto.common.processor.ProcessorThread;
+import org.peyto.common.processor.core.schedule.DefaultProcessorSchedulerTest.MockedThreadSleeper;
+import org.peyto.common.processor.core.schedule.DefaultProcessorSchedulerTest.MockedTimeProvider;
+
+import static org.junit.Assert.*;
+
+public class TimingWheelProcessorSchedulerTest {
+
+    private MockedTimeProvider timeProvider;
+    private MockedThreadSleeper sleeper;
+
+    private TimingWheelProcessorScheduler scheduler;
+
+    @Before
+    public void init() {
+        timeProvider = new MockedTimeProvider(0);
+        sleeper = new MockedThreadSleeper(timeProvider);
+        scheduler = new TimingWheelProcessorScheduler(timeProvider, sleeper, true, 4, 50, 1);
+    }
+
+    @Test(timeout = 10000)
+    public void simpleSchedule() throws Exception {
+        ProcessorThread thread1 = mockProcessorThread(1);
+        scheduler.schedule(1, timeProvider.getMillis() + 5);
+        blockTestUntilDaemonThreadSettled();
+        assertSleepingWithTimeout(5);
+
+        timeProvider.increase(5);
+        sleeper.wakedByTimeout();
+
+        blockTestUntilDaemonThreadSettled();
+        assertSleepingWithoutTimeout();
+        Mockito.verify(thread1).onScheduledWakeup(5);
+    }
+
+    @Test(timeout = 10000)
+    public void snapshotCountsTimersPerStripe() throws Exception {
+        mockProcessorThread(1);
+        mockProcessorThread(2);
+        scheduler.schedule(1, 5);
+        scheduler.schedule(1, 7);
+        scheduler.schedule(2, 6);
+        blockTestUntilDaemonThreadSettled();
+
+        SchedulerSnapshot snapshot = scheduler.snapshot();
+        assertEquals(4, snapshot.getShardsCount());
+        assertEquals(3, snapshot.getTimersCount());
+        assertEquals(2, snapshot.getTimersCount(1));
+        assertEquals(1, snapshot.getTimersCount(2));
+        assertEquals(5, snapshot.getEarliestDeadlineMillis());
+
+        timeProvider.increase(6);
+        sleeper.wakedByTimeout();
+        blockTestUntilDaemonThreadSettled();
+        assertEquals(1, scheduler.snapshot().getTimersCount());
+        assertEquals(1, scheduler.getMetrics().getNotifyLagMillis().getCount());
+        assertEquals(1, scheduler.getMetrics().getNotifyLagMillis().getMax());
+    }
+
+    @Test(timeout = 10000)
+    public void periodicFixedRateFoldsMissedPeriods() throws Exception {
+        ProcessorThread thread1 = mockProcessorThread(1);
+        long timerId = scheduler.schedulePeriodic(1, 5, 5, PeriodicMode.FIXED_RATE);
+        blockTestUntilDaemonThreadSettled();
+        assertSleepingWithTimeout(5);
+
+        timeProvider.increase(5);
+        sleeper.wakedByTimeout();
+        blockTestUntilDaemonThreadSettled();
+        assertSleepingWithTimeout(5);
+        Mockito.verify(thread1).onScheduledWakeup(5);
+
+        // daemon is late, wakeups at 10 and 15 are folded into one at 17, the next one is at 20
+        timeProvider.increase(12);
+        sleeper.wakedByTimeout();
+        blockTestUntilDaemonThreadSettled();
+        assertSleepingWithTimeout(3);
+        Mockito.verify(thread1).onScheduledWakeup(10);
+
+        assertTrue(scheduler.cancel(1, timerId));
+        timeProvider.increase(3);
+        sleeper.wakedByTimeout();
+        blockTestUntilDaemonThreadSettled();
+        assertSleepingWithoutTimeout();
+        Mockito.verify(thread1, Mockito.times(2)).onScheduledWakeup(Mockito.anyLong());
+    }
+
+    @Test(timeout = 10000)
+    public void scheduleBeforeExisting() throws Exception {
+        ProcessorThread thread1 = mockProcessorThread(1);
+        ProcessorThread thread2 = mockProcessorThread(2);
+
+        scheduler.schedule(1, timeProvider.getMillis() + 10);
+        blockTestUntilDaemonThreadSettled();
+        assertSleepingWithTimeout(10);
+
+        timeProvider.increase(1);
+        scheduler.schedule(2, timeProvider.getMillis() + 3);
+        blockTestUntilDaemonThreadSettled();
+        assertSleepingWithTimeout(3);
+
+        timeProvider.increase(3);
+        sleeper.wakedByTimeout();
+        blockTestUntilDaemonThreadSettled();
+        assertSleepingWithTimeout(6);
+        Mockito.verify(thread2).onScheduledWakeup(4);
+        Mockito.verify(thread1, Mockito.never()).onScheduledWakeup(Mockito.anyLong());
+
+        timeProvider.increase(7);
+        sleeper.wakedByTimeout();
+        blockTestUntilDaemonThreadSettled();
+        assertSleepingWithoutTimeout();
+        Mockito.verify(thread1).onScheduledWakeup(10);
+    }
+
+    @Test(timeout = 10000)
+    public void laterScheduleDoesNotWakeDaemon() throws Exception {
+        mockProcessorThread(1);
+        mockProcessorThread(2);
+        scheduler.schedule(1, timeProvider.getMillis() + 5);
+        blockTestUntilDaemonThreadSettled();
+        assertSleepingWithTimeout(5);
+
+        scheduler.schedule(2, timeProvider.getMillis() + 50);
+        scheduler.schedule(1, timeProvider.getMillis() + 5);
+        // MockedThreadSleeper resets its state on notify, so the daemon is still sleeping with the same timeout
+        assertSleepingWithTimeout(5);
+        assertEquals("[5ms : 1, 50ms : 2]", scheduler.timelineAsLimitedString(timeProvider.getMillis()));
+    }
+
+    @Test(timeout = 10000)
+    public void longDelaysAreCascaded() throws Exception {
+        ProcessorThread thread1 = mockProcessorThread(1);
+        ProcessorThread thread2 = mockProcessorThread(2);
+        scheduler.schedule(1, timeProvider.getMillis() + 1_000);
+        scheduler.schedule(2, timeProvider.getMillis() + 100_000);
+        blockTestUntilDaemonThreadSettled();
+        assertSleepingWithTimeout(1_000);
+
+        timeProvider.increase(1_000);
+        sleeper.wakedByTimeout();
+        blockTestUntilDaemonThreadSettled();
+        assertSleepingWithTimeout(99_000);
+        Mockito.verify(thread1).onScheduledWakeup(1000);
+
+        timeProvider.increase(99_000);
+        sleeper.wakedByTimeout();
+        blockTestUntilDaemonThreadSettled();
+        assertSleepingWithoutTimeout();
+        Mockito.verify(thread2).onScheduledWakeup(100000);
+    }
+
+    @Test(timeout = 10000)
+    public void scheduleInPast() throws Exception {
+        ProcessorThread thread1 = mockProcessorThread(1);
+        timeProvider.set(100);
+        scheduler.schedule(1, 95);
+
+        blockTestUntilDaemonThreadSettled();
+        assertSleepingWithoutTimeout();
+        Mockito.verify(thread1).onScheduledWakeup(95);
+    }
+
+    @Test(timeout = 10000)
+    public void cancelScheduled() throws Exception {
+        ProcessorThread thread1 = mockProcessorThread(1);
+        ProcessorThread thread2 = mockProcessorThread(2);
+        ProcessorThread thread3 = mockProcessorThread(3);
+
+        long timer1 = scheduler.schedule(1, timeProvider.getMillis() + 5);
+        long timer2 = scheduler.schedule(2, timeProvider.getMillis() + 5);
+        long timer3 = scheduler.schedule(2, timeProvider.getMillis() + 500);
+        scheduler.schedule(3, timeProvider.getMillis() + 7);
+        blockTestUntilDaemonThreadSettled();
+
+        assertTrue(scheduler.cancel(1, timer1));
+        assertFalse(scheduler.cancel(1, timer1));
+        assertFalse(scheduler.cancel(1, timer2)); // not a timer of the thread
+        assertEquals("[5ms : 2, 7ms : 3, 500ms : 2]", scheduler.timelineAsLimitedString(timeProvider.getMillis()));
+        scheduler.onFinish(2); // purges pending timers of the thread
+        assertFalse(scheduler.cancel(2, timer3));
+        assertEquals("[7ms : 3]", scheduler.timelineAsLimitedString(timeProvider.getMillis()));
+
+        timeProvider.increase(600);
+        sleeper.wakedByTimeout();
+        blockTestUntilDaemonThreadSettled();
+        assertSleepingWithoutTimeout();
+        Mockito.verify(thread1, Mockito.never()).onScheduledWakeup(Mockito.anyLong());
+        Mockito.verify(thread2, Mockito.never()).onScheduledWakeup(Mockito.anyLong());
+        Mockito.verify(thread3).onScheduledWakeup(7);
+    }
+
+    private ProcessorThread mockProcessorThread(long id) {
+        ProcessorThread thread = Mockito.mock(ProcessorThread.class);
+        scheduler.registerThread(id, thread);
+        return thread;
+    }
+
+    private void assertSleepingWithTimeout(int sleepingMillis) {
+        assertTrue(sleeper.isSleeping());
+        assertTrue(sleeper.isTimeoutSet());
+        assertEquals(timeProvider.getMillis() + sleepingMillis, sleeper.getTimeToWakeMillis());
+    }
+
+    private void assertSleepingWithoutTimeout() {
+        assertTrue(sleeper.isSleeping());
+        assertFalse(sleeper.isTimeoutSet());
+    }
+
+    private void blockTestUntilDaemonThreadSettled() {
+        while (!sleeper.isSleeping()) {
+            Thread.yield();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package org.peyto.common.processor.core.trace;
+
+import org.junit.Test;
+import org.peyto.common.processor.ProcessorResult;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CycleTracerTest {
+
+    @Test
+    public void bufferKeepsLastTraces() {
+        CycleTracer tracer = new CycleTracer(1, 4, "", 1000);
+        CycleTraceBuffer buffer = tracer.track(1, "test");
+        for (int cycle = 0; cycle < 10; cycle++) {
+            buffer.record(trace(cycle));
+        }
+        // the oldest slot is skipped, as it might be being overwritten
+        List<CycleTrace> traces = buffer.snapshot();
+        assertEquals(3, traces.size());
+        assertEquals(7, traces.get(0).getCycleNumber());
+        assertEquals(9, traces.get(2).getCycleNumber());
+
+        List<CycleTrace> newTraces = new ArrayList<>();
+        assertEquals(10, buffer.readFrom(9, newTraces));
+        assertEquals(1, newTraces.size());
+    }
+
+    @Test
+    public void samplesEveryNthCycle() {
+        CycleTraceBuffer buffer = new CycleTracer(3, 4, "", 1000).track(1, "test");
+        int sampled = 0;
+        for (int cycle = 0; cycle < 9; cycle++) {
+            if (buffer.sample()) {
+                sampled++;
+            }
+        }
+        assertEquals(3, sampled);
+        assertNull(new CycleTracer(0, 4, "", 1000).track(1, "test"));
+    }
+
+    @Test(timeout = 10000)
+    public void streamsTracesToFile() throws Exception {
+        File file = File.createTempFile("traces", ".csv");
+        file.deleteOnExit();
+        CycleTracer tracer = new CycleTracer(1, 16, file.getPath(), 5);
+        try {
+            CycleTraceBuffer buffer = tracer.track(1, "test");
+            buffer.record(trace(0));
+            buffer.record(trace(1));
+            tracer.untrack(1);
+            List<String> lines;
+            do {
+                Thread.sleep(5);
+                lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+            } while (lines.size() < 3);
+            assertEquals(CycleTrace.csvHeader(), lines.get(0));
+            assertEquals(trace(1).toCsv(), lines.get(2));
+            assertEquals(0, tracer.getLostTraces());
+        } finally {
+            tracer.destroy();
+        }
+    }
+
+    private static CycleTrace trace(long cycleNumber) {
+        return new CycleTrace(1, cycleNumber, CycleTrace.WakeReason.BUSY, -1, -1, 0, -1, -1, 100, ProcessorResult.BUSY);
+    }
+}
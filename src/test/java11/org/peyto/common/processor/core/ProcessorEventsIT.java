@@ -0,0 +1,77 @@
+package org.peyto.common.processor.core;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.peyto.common.processor.Processor;
+import org.peyto.common.processor.ProcessorContext;
+import org.peyto.common.processor.ProcessorResult;
+import org.peyto.common.processor.ProcessorThread;
+import org.peyto.common.processor.core.schedule.DefaultProcessorScheduler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs against the packaged multi-release jar (failsafe in java11 profile), so JDK 11+ events are loaded
+ * from META-INF/versions/11
+ */
+public class ProcessorEventsIT {
+
+    @Test
+    public void recordsEnabledEvents() throws IOException {
+        Processor processor = Mockito.mock(Processor.class);
+        Mockito.when(processor.process(Mockito.any(ProcessorContext.class))).thenReturn(ProcessorResult.IDLE);
+        DefaultProcessorTimeProvider timeProvider = new DefaultProcessorTimeProvider();
+        DefaultProcessorScheduler scheduler = new DefaultProcessorScheduler(timeProvider, new DefaultThreadSleeper(), false, 50, 0);
+        ProcessorThread thread = Mockito.mock(ProcessorThread.class);
+        scheduler.registerThread(5, thread);
+
+        Path file = Files.createTempFile("processor-events", ".jfr");
+        try (Recording recording = new Recording()) {
+            // cycle and notify events have a threshold, which a test cycle doesn't reach
+            recording.enable("org.peyto.processor.Cycle").withoutThreshold();
+            recording.enable("org.peyto.processor.InputOffered");
+            recording.enable("org.peyto.processor.NotifyThreads").withoutThreshold();
+            recording.start();
+
+            ProcessorRuntime<Object> runtime = ProcessorRuntimeFixture.runtime(7, (config, binder) -> {
+                binder.registerInput(0);
+                return processor;
+            });
+            runtime.offer(0, "a");
+            runtime.offer(0, "b");
+            runtime.runCycle();
+            long now = timeProvider.getMillis();
+            scheduler.schedule(5, now);
+            scheduler.notifyThreads(now);
+
+            recording.stop();
+            recording.dump(file);
+        }
+        try {
+            Map<String, List<RecordedEvent>> events = RecordingFile.readAllEvents(file).stream()
+                    .collect(Collectors.groupingBy(event -> event.getEventType().getName()));
+            List<RecordedEvent> cycles = events.getOrDefault("org.peyto.processor.Cycle", Collections.emptyList());
+            assertEquals(1, cycles.size());
+            assertEquals(7, cycles.get(0).getLong("threadId"));
+            assertEquals("IDLE", cycles.get(0).getString("result"));
+            assertEquals(2, cycles.get(0).getInt("queuedInputs"));
+            assertEquals(2, events.getOrDefault("org.peyto.processor.InputOffered", Collections.emptyList()).size());
+            // the scheduler daemon might notify the thread first
+            assertTrue(events.containsKey("org.peyto.processor.NotifyThreads"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}